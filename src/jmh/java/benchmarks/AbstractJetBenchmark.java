@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.jet.Jet;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.pipeline.Pipeline;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common scaffolding for the benchmarks: starts an embedded Jet member
+ * once per trial, lets the subclass populate its synthetic input and
+ * shuts the member down at the end.
+ * <p>
+ * Every benchmark class exposes two methods that run the same job:
+ * <ul>
+ *     <li>{@code throughput()} runs in {@code Mode.Throughput} and is
+ *     annotated with {@code @OperationsPerInvocation(<item count>)}, so
+ *     JMH reports its score in items per second;
+ *     <li>{@code latency()} runs in {@code Mode.SampleTime} and reports
+ *     the distribution of the whole job's latency, including the p0.99
+ *     percentile.
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "-Dhazelcast.logging.type=none"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public abstract class AbstractJetBenchmark {
+
+    protected JetInstance jet;
+
+    @Setup(Level.Trial)
+    public void startJet() throws Exception {
+        jet = Jet.newJetInstance();
+        populate(jet);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutdownJet() {
+        Jet.shutdownAll();
+    }
+
+    /**
+     * Fills the IMDG structures the benchmarked job reads from. Called once
+     * per trial, after the Jet member has started.
+     */
+    protected void populate(JetInstance jet) throws Exception {
+    }
+
+    protected void runJob(DAG dag) {
+        jet.newJob(dag).join();
+    }
+
+    protected void runJob(Pipeline pipeline) {
+        jet.newJob(pipeline).join();
+    }
+}
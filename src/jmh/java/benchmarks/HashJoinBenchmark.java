@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.datamodel.ItemsByTag;
+import com.hazelcast.jet.datamodel.Tag;
+import com.hazelcast.jet.datamodel.Tuple2;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.pipeline.BatchSource;
+import com.hazelcast.jet.pipeline.BatchStage;
+import com.hazelcast.jet.pipeline.HashJoinBuilder;
+import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.Sinks;
+import com.hazelcast.jet.pipeline.SourceBuilder;
+import datamodel.Broker;
+import datamodel.Market;
+import datamodel.Product;
+import datamodel.Trade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.Util.entry;
+import static com.hazelcast.jet.pipeline.JoinClause.joinMapEntries;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The three-way trade enrichment join from {@code BuildComputation.s11},
+ * with the {@code trades} event journal replaced by a bounded generator
+ * and the {@code products}, {@code brokers} and {@code markets} maps
+ * replaced by generated entries. An item is one trade.
+ */
+public class HashJoinBenchmark extends AbstractJetBenchmark {
+
+    static final int TRADE_COUNT = 1_000_000;
+    static final int PRODUCT_COUNT = 10_000;
+    static final int BROKER_COUNT = 1_000;
+    static final int MARKET_COUNT = 100;
+
+    private Pipeline pipeline;
+
+    @Override
+    protected void populate(JetInstance jet) {
+        pipeline = buildPipeline();
+    }
+
+    private static Pipeline buildPipeline() {
+        Pipeline p = Pipeline.create();
+        BatchStage<Trade> trades = p.drawFrom(trades(TRADE_COUNT));
+        BatchStage<Entry<Integer, Product>> prodEntries =
+                p.drawFrom(entries("products", PRODUCT_COUNT, Product::new));
+        BatchStage<Entry<Integer, Broker>> brokEntries =
+                p.drawFrom(entries("brokers", BROKER_COUNT, Broker::new));
+        BatchStage<Entry<Integer, Market>> marketEntries =
+                p.drawFrom(entries("markets", MARKET_COUNT, Market::new));
+
+        HashJoinBuilder<Trade> builder = trades.hashJoinBuilder();
+        Tag<Product> productTag = builder.add(prodEntries, joinMapEntries(Trade::productId));
+        Tag<Broker> brokerTag = builder.add(brokEntries, joinMapEntries(Trade::brokerId));
+        Tag<Market> marketTag = builder.add(marketEntries, joinMapEntries(Trade::marketId));
+        BatchStage<Tuple2<Trade, ItemsByTag>> joined = builder.build(Tuple2::tuple2);
+
+        joined.filter(t -> t.f1().get(productTag) == null
+                        || t.f1().get(brokerTag) == null
+                        || t.f1().get(marketTag) == null)
+              .drainTo(Sinks.list("unmatched-trades"));
+        return p;
+    }
+
+    static BatchSource<Trade> trades(int count) {
+        return SourceBuilder
+                .batch("trades", x -> new long[1])
+                .<Trade>fillBufferFn((seq, buf) -> {
+                    for (int i = 0; i < 1024 && seq[0] < count; i++, seq[0]++) {
+                        buf.add(SyntheticData.trade(seq[0], seq[0],
+                                PRODUCT_COUNT, BROKER_COUNT, MARKET_COUNT));
+                    }
+                    if (seq[0] == count) {
+                        buf.close();
+                    }
+                })
+                .build();
+    }
+
+    static <V> BatchSource<Entry<Integer, V>> entries(
+            String name, int count, DistributedFunction<Integer, V> createFn
+    ) {
+        return SourceBuilder
+                .batch(name, x -> new int[1])
+                .<Entry<Integer, V>>fillBufferFn((id, buf) -> {
+                    for (int i = 0; i < 1024 && id[0] < count; i++, id[0]++) {
+                        buf.add(entry(id[0], createFn.apply(id[0])));
+                    }
+                    if (id[0] == count) {
+                        buf.close();
+                    }
+                })
+                .build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(TRADE_COUNT)
+    public void throughput() {
+        runJob(pipeline);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(pipeline);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.core.IList;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.Sinks;
+import com.hazelcast.jet.pipeline.Sources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.hazelcast.jet.Traversers.traverseArray;
+import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Word count from {@code HelloWorld}, run over synthetic lines. An item
+ * is one input line.
+ */
+public class HelloWorldBenchmark extends AbstractJetBenchmark {
+
+    private static final int LINE_COUNT = 100_000;
+
+    private Pipeline pipeline;
+
+    @Override
+    protected void populate(JetInstance jet) {
+        Random rnd = new Random(LINE_COUNT);
+        List<String> lines = new ArrayList<>(LINE_COUNT);
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lines.add(SyntheticData.line(rnd));
+        }
+        IList<String> text = jet.getList("text");
+        text.addAll(lines);
+        pipeline = buildPipeline();
+    }
+
+    private static Pipeline buildPipeline() {
+        Pipeline p = Pipeline.create();
+        p.drawFrom(Sources.<String>list("text"))
+         .flatMap(line -> traverseArray(line.toLowerCase().split("\\W+")))
+         .filter(word -> !word.isEmpty())
+         .groupingKey(wholeItem())
+         .aggregate(counting())
+         .drainTo(Sinks.map("counts"));
+        return p;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(LINE_COUNT)
+    public void throughput() {
+        runJob(pipeline);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(pipeline);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package benchmarks;
+
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.TimestampKind;
+import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.processor.Processors;
+import com.hazelcast.jet.datamodel.TimestampedEntry;
+import datamodel.Trade;
+import expertzone.AccumulateBatchesByFrameP;
+import expertzone.BatchEventsP;
+import expertzone.EventBatch;
+import expertzone.RingBufferSlidingWindowP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import static benchmarks.StockExchangeCoreApiBenchmark.PRODUCT_COUNT;
+import static benchmarks.StockExchangeCoreApiBenchmark.SLIDE_STEP_MILLIS;
+import static benchmarks.StockExchangeCoreApiBenchmark.SLIDING_WINDOW_LENGTH_MILLIS;
+import static benchmarks.StockExchangeCoreApiBenchmark.TRADES_PER_MS;
+import static benchmarks.StockExchangeCoreApiBenchmark.TRADE_COUNT;
+import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.core.Partitioner.HASH_CODE;
+import static com.hazelcast.jet.core.SlidingWindowPolicy.slidingWinPolicy;
+import static com.hazelcast.jet.core.processor.Processors.noopP;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The trade-counting sliding window DAG of {@link
+ * StockExchangeCoreApiBenchmark} with the first stage fed one trade at a
+ * time ({@code accumulateByFrameP}) or in columnar batches ({@code
+ * BatchEventsP} and {@code AccumulateBatchesByFrameP}), and the second
+ * stage keeping a map per frame ({@code combineToSlidingWindowP}) or a
+ * ring buffer of frame sums per key ({@code RingBufferSlidingWindowP}).
+ * An item is one trade.
+ */
+public class StockExchangeBatchingBenchmark extends AbstractJetBenchmark {
+
+    @Param({"false", "true"})
+    public boolean batching;
+
+    /**
+     * The maximum number of trades in a batch.
+     */
+    @Param({"1024"})
+    public int batchSize;
+
+    /**
+     * The number of batches {@code BatchEventsP} fills at once. The source
+     * emits a watermark at each frame boundary, after {@code TRADES_PER_MS
+     * * SLIDE_STEP_MILLIS} trades, and all the batches are flushed before
+     * it, so a batch holds about that many trades divided by the bucket
+     * count, however big {@code batchSize} is.
+     */
+    @Param({"8", "64"})
+    public int bucketCount;
+
+    /**
+     * Implementation of {@code sliding-stage-2}: {@code jet} is {@code
+     * combineToSlidingWindowP}, {@code ringBuffer} is {@link
+     * RingBufferSlidingWindowP}. The source emits a watermark at each
+     * frame boundary, so the ring of each product slides by one frame per
+     * watermark and holds at most one window of frames plus the frame
+     * being filled; it never grows past its initial size.
+     */
+    @Param({"jet", "ringBuffer"})
+    public String windowCombiner;
+
+    private DAG dag;
+
+    @Override
+    protected void populate(JetInstance jet) {
+        dag = buildDag(TRADE_COUNT, batching, batchSize, bucketCount,
+                "ringBuffer".equals(windowCombiner));
+    }
+
+    static DAG buildDag(long tradeCount, boolean batching, int batchSize, int bucketCount,
+                        boolean ringBuffer) {
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = dag.newVertex("trade-source", () ->
+                new SyntheticData.GenerateTradesP(tradeCount, TRADES_PER_MS, PRODUCT_COUNT, 1, 1,
+                        winPolicy));
+        Vertex slidingStage2 = ringBuffer
+                ? dag.newVertex("sliding-stage-2",
+                        RingBufferSlidingWindowP.combineSumsToSlidingWindowP(winPolicy,
+                                TimestampedEntry::fromWindowResult))
+                : dag.newVertex("sliding-stage-2",
+                        Processors.combineToSlidingWindowP(winPolicy, counting(),
+                                TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", noopP());
+        tradeSource.localParallelism(1);
+
+        Vertex slidingStage1;
+        if (batching) {
+            Vertex batch = dag.newVertex("batch",
+                    BatchEventsP.batchEventsP(
+                            (Trade t) -> t.timestamp(),
+                            (Trade t) -> t.productId(),
+                            (Trade t) -> 1L,
+                            batchSize, bucketCount));
+            slidingStage1 = dag.newVertex("sliding-stage-1",
+                    AccumulateBatchesByFrameP.accumulateBatchesByFrameP(winPolicy));
+            batch.localParallelism(1);
+            dag.edge(between(tradeSource, batch))
+               .edge(between(batch, slidingStage1)
+                       .partitioned(EventBatch::bucket, HASH_CODE));
+        } else {
+            slidingStage1 = dag.newVertex("sliding-stage-1",
+                    Processors.accumulateByFrameP(
+                            singletonList((Trade t) -> t.productId()),
+                            singletonList((Trade t) -> t.timestamp()),
+                            TimestampKind.EVENT,
+                            winPolicy, counting()
+                    ));
+            dag.edge(between(tradeSource, slidingStage1)
+                    .partitioned(Trade::productId, HASH_CODE));
+        }
+
+        return dag
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(TRADE_COUNT)
+    public void throughput() {
+        runJob(dag);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(dag);
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.aggregate.AggregateOperation1;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.TimestampKind;
+import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.processor.Processors;
+import com.hazelcast.jet.datamodel.TimestampedEntry;
+import com.hazelcast.jet.function.DistributedComparator;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedToLongFunction;
+import datamodel.Trade;
+import expertzone.TwoStacksSlidingWindowP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.aggregate.AggregateOperations.maxBy;
+import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.core.Partitioner.HASH_CODE;
+import static com.hazelcast.jet.core.SlidingWindowPolicy.slidingWinPolicy;
+import static com.hazelcast.jet.core.processor.Processors.noopP;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The two-stage sliding window DAG from {@code StockExchangeCoreApi.buildDag()}.
+ * The event journal source is replaced by a bounded generator of
+ * synthetic trades so that each job run processes a fixed amount of event
+ * time. Like the journal source, the generator emits a watermark at each
+ * frame boundary, so the windows slide one frame at a time. An item is
+ * one trade.
+ */
+public class StockExchangeCoreApiBenchmark extends AbstractJetBenchmark {
+
+    static final int TRADE_COUNT = 1_000_000;
+    static final int TRADES_PER_MS = 100;
+    static final int PRODUCT_COUNT = 500;
+    static final int SLIDING_WINDOW_LENGTH_MILLIS = 1000;
+    static final int SLIDE_STEP_MILLIS = 10;
+
+    /**
+     * The aggregate operation: {@code counting} can deduct the frame that
+     * leaves the window, {@code maxBy} (the trade with the highest id)
+     * can't.
+     */
+    @Param({"counting", "maxBy"})
+    public String aggregation;
+
+    /**
+     * Implementation of {@code sliding-stage-2}: {@code jet} is {@code
+     * combineToSlidingWindowP}, {@code twoStacks} is {@link
+     * TwoStacksSlidingWindowP}. Each watermark from the source closes one
+     * frame, so both slide the window of each product by one frame per
+     * watermark, as they would on the event journal.
+     */
+    @Param({"jet", "twoStacks"})
+    public String windowCombiner;
+
+    private DAG dag;
+
+    @Override
+    protected void populate(JetInstance jet) {
+        AggregateOperation1<Trade, ?, ?> aggrOp = "maxBy".equals(aggregation)
+                ? maxBy(DistributedComparator.comparingInt(Trade::userId))
+                : counting();
+        dag = buildDag(TRADE_COUNT, aggrOp, "twoStacks".equals(windowCombiner));
+    }
+
+    static <A> DAG buildDag(long tradeCount, AggregateOperation1<Trade, A, ?> aggrOp, boolean twoStacks) {
+        DistributedToLongFunction<? super Trade> timestampFn = Trade::timestamp;
+        DistributedFunction<? super Trade, ?> keyFn = Trade::productId;
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = dag.newVertex("trade-source", () ->
+                new SyntheticData.GenerateTradesP(tradeCount, TRADES_PER_MS, PRODUCT_COUNT, 1, 1,
+                        winPolicy));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList(keyFn),
+                        singletonList(timestampFn),
+                        TimestampKind.EVENT,
+                        winPolicy, aggrOp
+                ));
+        Vertex slidingStage2 = twoStacks
+                ? dag.newVertex("sliding-stage-2",
+                        TwoStacksSlidingWindowP.combineToSlidingWindowP(winPolicy, aggrOp,
+                                TimestampedEntry::fromWindowResult))
+                : dag.newVertex("sliding-stage-2",
+                        Processors.combineToSlidingWindowP(winPolicy, aggrOp,
+                                TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", noopP());
+
+        tradeSource.localParallelism(1);
+
+        return dag
+                .edge(between(tradeSource, slidingStage1)
+                        .partitioned(keyFn, HASH_CODE))
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(TRADE_COUNT)
+    public void throughput() {
+        runJob(dag);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(dag);
+    }
+}
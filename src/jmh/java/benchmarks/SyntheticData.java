@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.Watermark;
+import datamodel.Trade;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Generators of the synthetic input the benchmarks run on. All of them
+ * are deterministic (seeded) so that two runs see exactly the same data.
+ */
+final class SyntheticData {
+
+    static final int VOCABULARY_SIZE = 20_000;
+    static final int WORDS_PER_LINE = 12;
+
+    private static final String[] VOCABULARY = vocabulary(VOCABULARY_SIZE);
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Returns a line of {@link #WORDS_PER_LINE} words drawn from a skewed
+     * distribution over the vocabulary: low-index words are much more
+     * frequent than the rest, which mimics the shape of natural text.
+     */
+    static String line(Random rnd) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_LINE; i++) {
+            if (i > 0) {
+                sb.append(i % 5 == 0 ? ", " : " ");
+            }
+            sb.append(word(rnd));
+        }
+        return sb.append('.').toString();
+    }
+
+    static String word(Random rnd) {
+        double r = rnd.nextDouble();
+        return VOCABULARY[(int) (VOCABULARY.length * r * r * r)];
+    }
+
+    /**
+     * Writes {@code docCount} text files of {@code linesPerDoc} lines each
+     * into {@code dir} and returns their paths.
+     */
+    static Path[] writeDocs(Path dir, int docCount, int linesPerDoc) throws IOException {
+        Random rnd = new Random(docCount);
+        Path[] docs = new Path[docCount];
+        for (int i = 0; i < docCount; i++) {
+            docs[i] = dir.resolve("doc-" + i + ".txt");
+            try (Writer w = Files.newBufferedWriter(docs[i], UTF_8)) {
+                for (int j = 0; j < linesPerDoc; j++) {
+                    w.write(line(rnd));
+                    w.write('\n');
+                }
+            }
+        }
+        return docs;
+    }
+
+    static Trade trade(long seq, long timestamp, int productCount, int brokerCount, int marketCount) {
+        int h = (int) (seq * 0x9E3779B9L >>> 16);
+        return new Trade((int) seq, timestamp,
+                (h & 0x7fff_ffff) % productCount,
+                ((h >>> 8) & 0x7fff_ffff) % brokerCount,
+                ((h >>> 16) & 0x7fff_ffff) % marketCount);
+    }
+
+    private static String[] vocabulary(int size) {
+        Random rnd = new Random(size);
+        String[] words = new String[size];
+        char[] chars = new char[12];
+        for (int i = 0; i < size; i++) {
+            int len = 2 + rnd.nextInt(chars.length - 2);
+            for (int j = 0; j < len; j++) {
+                chars[j] = (char) ((j == 0 && i % 7 == 0 ? 'A' : 'a') + rnd.nextInt(26));
+            }
+            words[i] = new String(chars, 0, len);
+        }
+        return words;
+    }
+
+    /**
+     * Source processor that emits {@code count} trades, {@code tradesPerMs}
+     * for each millisecond of event time, spread over the given number of
+     * products, brokers and markets. The trades come in timestamp order and
+     * the processor emits a watermark at each frame boundary of {@code
+     * winPolicy}, the way the event journal source of {@code
+     * StockExchangeCoreApi} does with {@code emitByFrame(winPolicy)}, so
+     * the windowing vertices downstream work frame by frame instead of
+     * all at once when the input completes.
+     */
+    static final class GenerateTradesP extends AbstractProcessor {
+        private final long count;
+        private final int tradesPerMs;
+        private final int productCount;
+        private final int brokerCount;
+        private final int marketCount;
+        private final SlidingWindowPolicy winPolicy;
+        private long seq;
+        private long nextWmTs = Long.MIN_VALUE;
+
+        GenerateTradesP(long count, int tradesPerMs, int productCount, int brokerCount, int marketCount,
+                        SlidingWindowPolicy winPolicy) {
+            this.count = count;
+            this.tradesPerMs = tradesPerMs;
+            this.productCount = productCount;
+            this.brokerCount = brokerCount;
+            this.marketCount = marketCount;
+            this.winPolicy = winPolicy;
+        }
+
+        @Override
+        public boolean complete() {
+            for (; seq < count; seq++) {
+                long timestamp = seq / tradesPerMs;
+                if (timestamp >= nextWmTs) {
+                    long frameTs = winPolicy.floorFrameTs(timestamp);
+                    if (!tryEmit(new Watermark(frameTs))) {
+                        return false;
+                    }
+                    nextWmTs = frameTs + winPolicy.frameSize();
+                }
+                Trade trade = trade(seq, timestamp, productCount, brokerCount, marketCount);
+                if (!tryEmit(trade)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
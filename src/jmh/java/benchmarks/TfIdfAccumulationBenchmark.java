@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tfidf.PostingList;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static com.hazelcast.jet.Util.entry;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Compares the accumulation step of the {@code tf-idf} vertex in
+ * isolation: the sample's {@code Map<String, List<Entry<Long, Double>>>}
+ * against {@code Map<String, PostingList>}. An item is one {@code (docId,
+ * word, tf)} triple.
+ * <p>
+ * Run it with {@code -prof gc} to see the allocation rate and GC time.
+ * The {@link #main} method prints the retained heap of both structures
+ * for the same input.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+public class TfIdfAccumulationBenchmark {
+
+    static final int POSTING_COUNT = 2_000_000;
+    static final int WORD_COUNT = 50_000;
+    static final int DOC_COUNT = 100_000;
+
+    private static Object retained;
+
+    private String[] words;
+    private int[] wordIndexes;
+    private long[] docIds;
+    private long[] tfs;
+
+    @Setup
+    public void generateInput() {
+        Random rnd = new Random(POSTING_COUNT);
+        words = new String[WORD_COUNT];
+        for (int i = 0; i < WORD_COUNT; i++) {
+            words[i] = "word" + i;
+        }
+        wordIndexes = new int[POSTING_COUNT];
+        docIds = new long[POSTING_COUNT];
+        tfs = new long[POSTING_COUNT];
+        for (int i = 0; i < POSTING_COUNT; i++) {
+            double r = rnd.nextDouble();
+            wordIndexes[i] = (int) (WORD_COUNT * r * r);
+            docIds[i] = rnd.nextInt(DOC_COUNT);
+            tfs[i] = 1 + rnd.nextInt(20);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSTING_COUNT)
+    public Map<String, List<Entry<Long, Double>>> boxed() {
+        Map<String, List<Entry<Long, Double>>> wordDocTf = new HashMap<>();
+        for (int i = 0; i < POSTING_COUNT; i++) {
+            wordDocTf.computeIfAbsent(words[wordIndexes[i]], w -> new ArrayList<>())
+                     .add(entry(docIds[i], (double) tfs[i]));
+        }
+        return wordDocTf;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSTING_COUNT)
+    public Map<String, PostingList> primitive() {
+        Map<String, PostingList> wordDocTf = new HashMap<>();
+        for (int i = 0; i < POSTING_COUNT; i++) {
+            wordDocTf.computeIfAbsent(words[wordIndexes[i]], w -> new PostingList())
+                     .add(docIds[i], tfs[i]);
+        }
+        return wordDocTf;
+    }
+
+    public static void main(String[] args) {
+        TfIdfAccumulationBenchmark b = new TfIdfAccumulationBenchmark();
+        b.generateInput();
+        System.out.format("boxed:     %,d bytes retained%n", retainedBytes(b::boxed));
+        System.out.format("primitive: %,d bytes retained%n", retainedBytes(b::primitive));
+    }
+
+    private static long retainedBytes(Supplier<Object> structure) {
+        long before = usedHeap();
+        // the static field keeps the structure reachable during the measurement
+        retained = structure.get();
+        long after = usedHeap();
+        retained = null;
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Util;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.core.Processor;
+import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.processor.Processors;
+import com.hazelcast.jet.core.processor.SinkProcessors;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.pipeline.ContextFactory;
+import expertzone.WordTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import tfidf.CompressedTfIdfP;
+import tfidf.MappedDocTokenizeP;
+import tfidf.PreCountingTokenizeP;
+import tfidf.PrimitiveTfIdfP;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.hazelcast.jet.Traversers.lazy;
+import static com.hazelcast.jet.Traversers.traverseIterable;
+import static com.hazelcast.jet.Traversers.traverseStream;
+import static com.hazelcast.jet.Util.entry;
+import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.aggregate.AggregateOperations.summingLong;
+import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.core.Edge.from;
+import static com.hazelcast.jet.core.Partitioner.HASH_CODE;
+import static com.hazelcast.jet.core.processor.Processors.aggregateByKeyP;
+import static com.hazelcast.jet.core.processor.Processors.flatMapUsingContextP;
+import static com.hazelcast.jet.core.processor.SourceProcessors.readMapP;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The inverted TF-IDF index DAG from {@code TfIdfCoreApi}, run over
+ * synthetic documents written to a temporary directory. An item is one
+ * line of input text.
+ * <p>
+ * {@code TfIdfCoreApi} keeps its processors private to the sample, so the
+ * ones used here are line-by-line copies of them. Keep them in sync when
+ * the sample changes.
+ */
+public class TfIdfCoreApiBenchmark extends AbstractJetBenchmark {
+
+    static final int DOC_COUNT = 200;
+    static final int LINES_PER_DOC = 500;
+    static final int LINE_COUNT = DOC_COUNT * LINES_PER_DOC;
+
+    private static final String DOCID_NAME = "docId_name";
+    private static final String INVERTED_INDEX = "inverted-index";
+
+    /**
+     * Implementation of the {@code tf-idf} vertex: {@code boxed} is the
+     * sample's {@code TfIdfP}, {@code primitive} is {@link PrimitiveTfIdfP}
+     * and {@code compressed} is {@link CompressedTfIdfP}.
+     */
+    @Param({"boxed", "primitive", "compressed"})
+    public String tfIdfImpl;
+
+    /**
+     * How documents are read and tokenized: {@code lines} is the sample's
+     * {@code doc-lines} and {@code tokenize} pair, {@code mapped} is
+     * {@link MappedDocTokenizeP} and {@code precount} replaces {@code
+     * tokenize} with {@link PreCountingTokenizeP}.
+     */
+    @Param({"lines", "mapped", "precount"})
+    public String reader;
+
+    private Path docDir;
+    private DAG dag;
+
+    @Override
+    protected void populate(JetInstance jet) throws IOException {
+        docDir = Files.createTempDirectory("tf-idf-benchmark");
+        Path[] docs = SyntheticData.writeDocs(docDir, DOC_COUNT, LINES_PER_DOC);
+        Map<Long, String> docIdName = new HashMap<>();
+        for (int i = 0; i < docs.length; i++) {
+            docIdName.put((long) i, docs[i].toString());
+        }
+        IMap<Long, String> map = jet.getMap(DOCID_NAME);
+        map.putAll(docIdName);
+        dag = buildDag(tfIdfSupplier(tfIdfImpl), reader);
+    }
+
+    private static DistributedSupplier<Processor> tfIdfSupplier(String tfIdfImpl) {
+        switch (tfIdfImpl) {
+            case "primitive":
+                return PrimitiveTfIdfP::new;
+            case "compressed":
+                return CompressedTfIdfP::new;
+            default:
+                return TfIdfP::new;
+        }
+    }
+
+    @TearDown
+    public void deleteDocs() throws IOException {
+        try (Stream<Path> files = Files.list(docDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(docDir);
+    }
+
+    /**
+     * Builds the TF-IDF DAG with the given implementation of the
+     * {@code tf-idf} vertex and document reader.
+     */
+    static DAG buildDag(DistributedSupplier<Processor> tfIdfSupplier, String reader) {
+        DistributedFunction<Entry<Entry<?, String>, ?>, String> byWord = item -> item.getKey().getValue();
+
+        DAG dag = new DAG();
+        Vertex stopwordSource = dag.newVertex("stopword-source", StopwordsP::new);
+        Vertex docSource = dag.newVertex("doc-source", readMapP(DOCID_NAME));
+        Vertex docCount = dag.newVertex("doc-count", Processors.aggregateP(counting()));
+        Vertex tf = dag.newVertex("tf", "precount".equals(reader)
+                ? aggregateByKeyP(singletonList(entryKey()),
+                        summingLong((Entry<Entry<Long, String>, Long> e) -> e.getValue()), Util::entry)
+                : aggregateByKeyP(singletonList(wholeItem()), counting(), Util::entry));
+        Vertex tfidf = dag.newVertex("tf-idf", tfIdfSupplier);
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP(INVERTED_INDEX));
+
+        stopwordSource.localParallelism(1);
+        docSource.localParallelism(1);
+        docCount.localParallelism(1);
+
+        if ("mapped".equals(reader)) {
+            Vertex tokenize = dag.newVertex("tokenize", () -> new MappedDocTokenizeP(Paths::get));
+            dag.edge(between(stopwordSource, tokenize).broadcast().priority(-1))
+               .edge(from(docSource, 1).to(tokenize, 1).distributed().broadcast())
+               .edge(between(tokenize, tf).distributed().partitioned(wholeItem()));
+        } else {
+            Vertex docLines = dag.newVertex("doc-lines", flatMapUsingContextP(
+                    ContextFactory.withCreateFn(jet -> null).nonCooperative(),
+                    (Object ctx, Entry<Long, String> e) ->
+                            traverseStream(docLines(e.getValue())
+                                    .map(line -> entry(e.getKey(), line)))));
+            docLines.localParallelism(1);
+            dag.edge(from(docSource, 1).to(docLines));
+            if ("precount".equals(reader)) {
+                Vertex tokenize = dag.newVertex("tokenize", PreCountingTokenizeP::new);
+                dag.edge(between(stopwordSource, tokenize).broadcast().priority(-1))
+                   .edge(from(docLines).to(tokenize, 1))
+                   .edge(between(tokenize, tf).partitioned(entryKey(), HASH_CODE));
+            } else {
+                Vertex tokenize = dag.newVertex("tokenize", TokenizeP::new);
+                dag.edge(between(stopwordSource, tokenize).broadcast().priority(-1))
+                   .edge(from(docLines).to(tokenize, 1))
+                   .edge(between(tokenize, tf).partitioned(wholeItem(), HASH_CODE));
+            }
+        }
+
+        return dag
+                .edge(between(docSource, docCount).distributed().broadcast())
+                .edge(between(docCount, tfidf).broadcast().priority(-1))
+                .edge(from(tf).to(tfidf, 1).distributed().partitioned(byWord, HASH_CODE))
+                .edge(between(tfidf, sink));
+    }
+
+    private static Stream<String> docLines(String path) {
+        try {
+            return Files.lines(Paths.get(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(LINE_COUNT)
+    public void throughput() {
+        runJob(dag);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(dag);
+    }
+
+    /**
+     * Emits the short words among a sample of the synthetic text as the
+     * stopword set. Due to the skew of the word distribution these are
+     * also among the most frequent ones.
+     */
+    static class StopwordsP extends AbstractProcessor {
+        @Override
+        public boolean complete() {
+            Random rnd = new Random(0);
+            Set<String> stopwords = new HashSet<>();
+            for (int i = 0; i < 10_000; i++) {
+                String word = SyntheticData.word(rnd).toLowerCase();
+                if (word.length() <= 3) {
+                    stopwords.add(word);
+                }
+            }
+            return tryEmit(stopwords);
+        }
+    }
+
+    static class TokenizeP extends AbstractProcessor {
+        private Set<String> stopwords;
+        private final WordTokenizer tokenizer = new WordTokenizer();
+        private final FlatMapper<Entry<Long, String>, Entry<Long, String>>
+                flatMapper = flatMapper(e ->
+                tokenizer.tokenize(e.getValue())
+                         .filter(word -> !stopwords.contains(word))
+                         .map(word -> entry(e.getKey(), word)));
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected boolean tryProcess0(@Nonnull Object item) {
+            stopwords = (Set<String>) item;
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected boolean tryProcess1(@Nonnull Object item) {
+            return flatMapper.tryProcess((Entry<Long, String>) item);
+        }
+    }
+
+    static class TfIdfP extends AbstractProcessor {
+        private double logDocCount;
+
+        private final Map<String, List<Entry<Long, Double>>> wordDocTf =
+                new HashMap<>();
+        private final Traverser<Entry<String, List<Entry<Long, Double>>>>
+                invertedIndexTraverser = lazy(() ->
+                traverseIterable(wordDocTf.entrySet())
+                        .map(this::toInvertedIndexEntry));
+
+        @Override
+        protected boolean tryProcess0(@Nonnull Object item) {
+            logDocCount = Math.log((Long) item);
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        protected boolean tryProcess1(@Nonnull Object item) {
+            Entry<Entry<Long, String>, Long> e =
+                    (Entry<Entry<Long, String>, Long>) item;
+            long docId = e.getKey().getKey();
+            String word = e.getKey().getValue();
+            long tf = e.getValue();
+            wordDocTf.computeIfAbsent(word, w -> new ArrayList<>())
+                     .add(entry(docId, (double) tf));
+            return true;
+        }
+
+        @Override
+        public boolean complete() {
+            return emitFromTraverser(invertedIndexTraverser);
+        }
+
+        private Entry<String, List<Entry<Long, Double>>> toInvertedIndexEntry(
+                Entry<String, List<Entry<Long, Double>>> wordDocTf
+        ) {
+            double logDf = Math.log(wordDocTf.getValue().size());
+            double idf = logDocCount - logDf;
+            return entry(wordDocTf.getKey(), wordDocTf.getValue().stream()
+                    .map(docIdTf -> entry(docIdTf.getKey(), docIdTf.getValue() * idf))
+                    .collect(toList()));
+        }
+    }
+}
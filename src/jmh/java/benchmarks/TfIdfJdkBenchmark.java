@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import tfidf.ForkJoinTfIdf;
+import tfidf.PostingList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.hazelcast.jet.Util.entry;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.collectingAndThen;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Compares the Java Streams implementation of TF-IDF from {@code
+ * TfIdfJdkStreams} with {@link ForkJoinTfIdf} on the same synthetic
+ * documents as {@link TfIdfCoreApiBenchmark}, so the scores are
+ * comparable with the Jet DAG. An item is one line of input text.
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class TfIdfJdkBenchmark {
+
+    private static final Pattern DELIMITER = Pattern.compile("\\W+");
+
+    private Path docDir;
+    private Map<Long, String> docId2Name;
+    private Set<String> stopwords;
+
+    @Setup
+    public void writeDocs() throws IOException {
+        docDir = Files.createTempDirectory("tf-idf-jdk-benchmark");
+        Path[] docs = SyntheticData.writeDocs(docDir,
+                TfIdfCoreApiBenchmark.DOC_COUNT, TfIdfCoreApiBenchmark.LINES_PER_DOC);
+        docId2Name = new HashMap<>();
+        for (int i = 0; i < docs.length; i++) {
+            docId2Name.put((long) i, docs[i].toString());
+        }
+        stopwords = new HashSet<>();
+    }
+
+    @TearDown
+    public void deleteDocs() throws IOException {
+        try (Stream<Path> files = Files.list(docDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(docDir);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(TfIdfCoreApiBenchmark.LINE_COUNT)
+    public Map<String, List<Entry<Long, Double>>> streams() {
+        Map<Entry<Long, String>, Long> tfMap = docId2Name
+                .entrySet()
+                .parallelStream()
+                .flatMap(TfIdfJdkBenchmark::docLines)
+                .flatMap(this::tokenize)
+                .collect(groupingBy(identity(), counting()));
+        double logDocCount = Math.log(docId2Name.size());
+        return tfMap
+                .entrySet()
+                .parallelStream()
+                .collect(groupingBy(
+                        e -> e.getKey().getValue(),
+                        collectingAndThen(
+                                toList(),
+                                entries -> {
+                                    double idf = logDocCount - Math.log(entries.size());
+                                    return entries.stream()
+                                                  .map(e -> entry(e.getKey().getKey(), e.getValue() * idf))
+                                                  .collect(toList());
+                                }
+                        )
+                ));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(TfIdfCoreApiBenchmark.LINE_COUNT)
+    public Map<String, PostingList> forkJoin() {
+        return new ForkJoinTfIdf(Paths::get, stopwords)
+                .buildInvertedIndex(ForkJoinPool.commonPool(), docId2Name);
+    }
+
+    private static Stream<Entry<Long, String>> docLines(Entry<Long, String> idAndName) {
+        try {
+            return Files.lines(Paths.get(idAndName.getValue()))
+                        .map(String::toLowerCase)
+                        .map(line -> entry(idAndName.getKey(), line));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Stream<Entry<Long, String>> tokenize(Entry<Long, String> docLine) {
+        return Arrays.stream(DELIMITER.split(docLine.getValue()))
+                     .filter(token -> !token.isEmpty())
+                     .filter(token -> !stopwords.contains(token))
+                     .map(word -> entry(docLine.getKey(), word));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetInstance;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.TearDown;
+import tfidf.CompressedPostings;
+import tfidf.CompressedTfIdfP;
+import tfidf.TfIdfQueryEngine;
+import tfidf.TfIdfQueryEngine.QueryResult;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Latency of top-k queries against the compressed index built by the
+ * TF-IDF DAG over synthetic documents. Each invocation runs one query of
+ * {@code wordsPerQuery} words drawn from the synthetic vocabulary.
+ */
+public class TfIdfQueryBenchmark extends AbstractJetBenchmark {
+
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"1", "3"})
+    public int wordsPerQuery;
+
+    @Param("10")
+    public int k;
+
+    private Path docDir;
+    private TfIdfQueryEngine<CompressedPostings> engine;
+    private String[] queries;
+    private int nextQuery;
+
+    @Override
+    protected void populate(JetInstance jet) throws IOException {
+        docDir = Files.createTempDirectory("tf-idf-query-benchmark");
+        Path[] docs = SyntheticData.writeDocs(docDir,
+                TfIdfCoreApiBenchmark.DOC_COUNT, TfIdfCoreApiBenchmark.LINES_PER_DOC);
+        Map<Long, String> docIdName = new HashMap<>();
+        for (int i = 0; i < docs.length; i++) {
+            docIdName.put((long) i, docs[i].toString());
+        }
+        jet.<Long, String>getMap("docId_name").putAll(docIdName);
+        runJob(TfIdfCoreApiBenchmark.buildDag(CompressedTfIdfP::new, "lines"));
+
+        IMap<String, CompressedPostings> index = jet.getMap("inverted-index");
+        engine = TfIdfQueryEngine.compressed(index);
+        Random rnd = new Random(QUERY_COUNT);
+        queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = 0; j < wordsPerQuery; j++) {
+                sb.append(SyntheticData.word(rnd)).append(' ');
+            }
+            queries[i] = sb.toString();
+        }
+    }
+
+    @TearDown
+    public void deleteDocs() throws IOException {
+        try (Stream<Path> files = Files.list(docDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(docDir);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MICROSECONDS)
+    public QueryResult latency() {
+        String query = queries[nextQuery++ & (QUERY_COUNT - 1)];
+        return engine.search(query, k);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import expertzone.WordTokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Compares the {@code DELIMITER.split(line.toLowerCase())} tokenization
+ * used throughout the samples with {@link WordTokenizer}. An item is one
+ * input line.
+ * <p>
+ * By default the input is synthetic text. Set {@code booksDir} to a
+ * directory of text files (such as the books the TF-IDF sample indexes)
+ * to run on natural text instead. Add {@code -prof gc} to the JMH options
+ * to see the allocation rate of both variants.
+ */
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+public class TokenizerBenchmark {
+
+    private static final int LINE_COUNT = 100_000;
+    private static final Pattern DELIMITER = Pattern.compile("\\W+");
+
+    @Param("")
+    public String booksDir;
+
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private String[] lines;
+
+    @Setup
+    public void loadLines() throws IOException {
+        List<String> text = booksDir.isEmpty() ? syntheticLines() : bookLines(Paths.get(booksDir));
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("No text in " + booksDir);
+        }
+        lines = new String[LINE_COUNT];
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lines[i] = text.get(i % text.size());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(LINE_COUNT)
+    public void split(Blackhole bh) {
+        for (String line : lines) {
+            for (String word : DELIMITER.split(line.toLowerCase())) {
+                if (!word.isEmpty()) {
+                    bh.consume(word);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(LINE_COUNT)
+    public void wordTokenizer(Blackhole bh) {
+        for (String line : lines) {
+            tokenizer.tokenize(line);
+            for (String word; (word = tokenizer.next()) != null; ) {
+                bh.consume(word);
+            }
+        }
+    }
+
+    private static List<String> syntheticLines() {
+        Random rnd = new Random(LINE_COUNT);
+        List<String> text = new ArrayList<>(LINE_COUNT);
+        for (int i = 0; i < LINE_COUNT; i++) {
+            text.add(SyntheticData.line(rnd));
+        }
+        return text;
+    }
+
+    private static List<String> bookLines(Path dir) throws IOException {
+        List<String> text = new ArrayList<>();
+        try (Stream<Path> books = Files.list(dir)) {
+            for (Path book : (Iterable<Path>) books::iterator) {
+                text.addAll(Files.readAllLines(book, ISO_8859_1));
+                if (text.size() >= LINE_COUNT) {
+                    break;
+                }
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package benchmarks;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.Util;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.core.Partitioner;
+import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.processor.Processors;
+import com.hazelcast.jet.core.processor.SinkProcessors;
+import com.hazelcast.jet.core.processor.SourceProcessors;
+import expertzone.SumByKeyP;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static com.hazelcast.jet.Traversers.traverseArray;
+import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The two-stage word count DAG from {@code WordCountCoreApi}, run over
+ * synthetic lines. An item is one input line. Add {@code -prof gc} to the
+ * JMH options to compare the allocation rate of the two aggregation
+ * variants.
+ */
+public class WordCountCoreApiBenchmark extends AbstractJetBenchmark {
+
+    static final int LINE_COUNT = 100_000;
+
+    /**
+     * Implementation of {@code accumulate} and {@code combine}: {@code boxed}
+     * is the sample's {@code accumulateByKeyP}/{@code combineByKeyP} pair,
+     * {@code primitive} is {@link SumByKeyP}.
+     */
+    @Param({"boxed", "primitive"})
+    public String aggregation;
+
+    private DAG dag;
+
+    @Override
+    protected void populate(JetInstance jet) {
+        Random rnd = new Random(LINE_COUNT);
+        Map<Integer, String> lines = new HashMap<>();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            lines.put(i, SyntheticData.line(rnd));
+        }
+        IMap<Integer, String> map = jet.getMap("lines");
+        map.putAll(lines);
+        dag = buildDag("primitive".equals(aggregation));
+    }
+
+    static DAG buildDag(boolean primitiveAggregation) {
+        DAG dag = new DAG();
+        Vertex source = dag.newVertex("source", SourceProcessors.readMapP("lines"));
+        Pattern delimiter = Pattern.compile("\\W+");
+        Vertex tokenize = dag.newVertex("tokenize",
+                Processors.flatMapP((Entry<Integer, String> e) ->
+                        traverseArray(delimiter.split(e.getValue().toLowerCase()))
+                                .filter(word -> !word.isEmpty()))
+        );
+        Vertex accumulate;
+        Vertex combine;
+        if (primitiveAggregation) {
+            accumulate = dag.newVertex("accumulate", SumByKeyP.countByKeyP(wholeItem()));
+            combine = dag.newVertex("combine", SumByKeyP.combineSumsByKeyP());
+        } else {
+            accumulate = dag.newVertex("accumulate",
+                    Processors.accumulateByKeyP(singletonList(wholeItem()), counting()));
+            combine = dag.newVertex("combine",
+                    Processors.combineByKeyP(counting(), Util::entry));
+        }
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP("counts"));
+
+        return dag.edge(between(source, tokenize))
+                  .edge(between(tokenize, accumulate)
+                          .partitioned(wholeItem(), Partitioner.HASH_CODE))
+                  .edge(between(accumulate, combine)
+                          .distributed()
+                          .partitioned(entryKey()))
+                  .edge(between(combine, sink));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(SECONDS)
+    @OperationsPerInvocation(LINE_COUNT)
+    public void throughput() {
+        runJob(dag);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(MILLISECONDS)
+    public void latency() {
+        runJob(dag);
+    }
+}
@@ -1,8 +1,10 @@
 import com.hazelcast.client.config.ClientConfig;
+import com.hazelcast.config.InMemoryFormat;
 import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.core.IMap;
 import com.hazelcast.jet.Jet;
 import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.config.JetConfig;
 import com.hazelcast.jet.datamodel.ItemsByTag;
 import com.hazelcast.jet.datamodel.Tag;
 import com.hazelcast.jet.datamodel.Tuple2;
@@ -31,6 +33,9 @@ import datamodel.StockInfo;
 import datamodel.Trade;
 import datamodel.Tweet;
 import datamodel.TweetWord;
+import expertzone.HeavyHitters;
+import expertzone.IntLookupTable;
+import expertzone.RefreshingLookupTable;
 
 import java.util.List;
 import java.util.Map.Entry;
@@ -46,10 +51,14 @@ import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
 import static com.hazelcast.jet.aggregate.AggregateOperations.maxBy;
 import static com.hazelcast.jet.aggregate.AggregateOperations.toList;
 import static com.hazelcast.jet.datamodel.Tuple2.tuple2;
+import static com.hazelcast.jet.datamodel.Tuple3.tuple3;
 import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
 import static com.hazelcast.jet.pipeline.JoinClause.joinMapEntries;
 import static com.hazelcast.jet.pipeline.JournalInitialPosition.START_FROM_CURRENT;
 import static com.hazelcast.jet.pipeline.WindowDefinition.sliding;
+import static expertzone.AsyncMapLookupP.mapUsingIMapAsyncP;
+import static expertzone.IntLookupTable.intLookupTable;
+import static expertzone.RefreshingLookupTable.refreshingLookupTable;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -240,6 +249,27 @@ class BuildComputation {
         //end::s10[]
     }
 
+    static void s10a() {
+        //tag::s10a[]
+        Pipeline p = Pipeline.create();
+
+        // The primary stream (stream to be enriched): trades
+        StreamStage<Trade> trades = p.drawFrom(Sources.mapJournal(
+                "trades", mapPutEvents(), mapEventNewValue(), START_FROM_CURRENT));
+
+        // The enriching maps, copied into int-keyed tables, one per member
+        ContextFactory<IntLookupTable<Product>> products = intLookupTable("products");
+        ContextFactory<IntLookupTable<Broker>> brokers = intLookupTable("brokers");
+
+        // Look up the trade's product and broker by the primitive int keys
+        StreamStage<Tuple3<Trade, Product, Broker>> joined = trades
+                .mapUsingContext(products, (prods, trade) ->
+                        tuple2(trade, prods.get(trade.productId())))
+                .mapUsingContext(brokers, (broks, t2) ->
+                        tuple3(t2.f0(), t2.f1(), broks.get(t2.f0().brokerId())));
+        //end::s10a[]
+    }
+
     static void s11() {
         //tag::s11[]
         Pipeline p = Pipeline.create();
@@ -283,6 +313,34 @@ class BuildComputation {
         //end::s12[]
     }
 
+    static void s11a() {
+        //tag::s11a[]
+        Pipeline p = Pipeline.create();
+
+        // The stream to be enriched: trades
+        StreamStage<Trade> trades = p.drawFrom(Sources.mapJournal(
+                "trades", mapPutEvents(), mapEventNewValue(), START_FROM_CURRENT));
+
+        // The enriching maps, one table per member that follows the map's updates
+        ContextFactory<RefreshingLookupTable<Integer, Product>> products =
+                refreshingLookupTable("products");
+        ContextFactory<RefreshingLookupTable<Integer, Broker>> brokers =
+                refreshingLookupTable("brokers");
+        ContextFactory<RefreshingLookupTable<Integer, Market>> markets =
+                refreshingLookupTable("markets");
+
+        // Look up the current product, broker and market of each trade
+        StreamStage<String> enriched = trades
+                .mapUsingContext(products, (prods, trade) ->
+                        tuple2(trade, prods.get(trade.productId())))
+                .mapUsingContext(brokers, (broks, t2) ->
+                        tuple3(t2.f0(), t2.f1(), broks.get(t2.f0().brokerId())))
+                .mapUsingContext(markets, (marks, t3) ->
+                        t3.f0() + ": " + t3.f1() + ", " + t3.f2() + ", "
+                                + marks.get(t3.f0().marketId()));
+        //end::s11a[]
+    }
+
     static void s13a() {
         Pipeline p = Pipeline.create();
         //tag::s13a[]
@@ -312,6 +370,20 @@ class BuildComputation {
         //end::s13[]
     }
 
+    static void s13b() {
+        Pipeline p = Pipeline.create();
+        StreamStage<String> tweets = p.drawFrom(Sources.mapJournal("tweets",
+                mapPutEvents(), mapEventNewValue(), START_FROM_CURRENT));
+        //tag::s13b[]
+        tweets.flatMap(tweet -> traverseArray(tweet.toLowerCase().split("\\W+")))
+              .filter(word -> !word.isEmpty())
+              .addTimestamps()
+              .window(sliding(MINUTES.toMillis(1), SECONDS.toMillis(1)))
+              .aggregate(HeavyHitters.topK(10, 0.01, 0.01))
+              .drainTo(Sinks.list("result"));
+        //end::s13b[]
+    }
+
     static void s14() {
         //tag::s14[]
         Pipeline p = Pipeline.create();
@@ -358,6 +430,27 @@ class BuildComputation {
         //end::s16[]
     }
 
+    static void s16c() {
+        //tag::s16c[]
+        JetConfig cfg = new JetConfig();
+        cfg.getHazelcastConfig().getMapConfig("stock-info")
+           .setNearCacheConfig(new NearCacheConfig()
+                   .setInMemoryFormat(InMemoryFormat.OBJECT) // <1>
+                   .setCacheLocalEntries(true));             // <2>
+        JetInstance jet = Jet.newJetInstance(cfg);
+
+        IMap<String, StockInfo> stockMap = jet.getMap("stock-info");
+        StreamSource<Trade> tradesSource = Sources.mapJournal("trades",
+                mapPutEvents(), mapEventNewValue(), START_FROM_CURRENT);
+
+        Pipeline p = Pipeline.create();
+        p.drawFrom(tradesSource)
+         .groupingKey(Trade::ticker) // <3>
+         .mapUsingIMap(stockMap, Trade::setStockInfo)
+         .drainTo(Sinks.list("result"));
+        //end::s16c[]
+    }
+
     static void s16a() {
         //tag::s16a[]
         ContextFactory<IMap<String, StockInfo>> ctxFac = ContextFactory
@@ -379,6 +472,24 @@ class BuildComputation {
         //end::s16a[]
     }
 
+    static void s16b() {
+        //tag::s16b[]
+        StreamSource<Trade> tradesSource = Sources.mapJournal("trades",
+                mapPutEvents(), mapEventNewValue(), START_FROM_CURRENT);
+
+        Pipeline p = Pipeline.create();
+        p.drawFrom(tradesSource)
+         .<Trade>customTransform("enrich-with-stock-info", mapUsingIMapAsyncP(
+                 "stock-info",
+                 Trade::ticker,
+                 (Trade trade, StockInfo info) -> trade.setStockInfo(info),
+                 256,     // batch size
+                 4,       // max batches in flight
+                 false))  // unordered
+         .drainTo(Sinks.list("result"));
+        //end::s16b[]
+    }
+
     static void s17() {
         //tag::s17[]
         Pipeline p = Pipeline.create();
@@ -22,8 +22,10 @@ import java.util.Map.Entry;
 import static com.hazelcast.jet.Traversers.traverseArray;
 import static com.hazelcast.jet.Util.mapEventNewValue;
 import static com.hazelcast.jet.Util.mapPutEvents;
+import static com.hazelcast.jet.aggregate.AggregateOperations.aggregateOperation2;
 import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
 import static com.hazelcast.jet.aggregate.AggregateOperations.maxBy;
+import static com.hazelcast.jet.aggregate.AggregateOperations.summingLong;
 import static com.hazelcast.jet.aggregate.AggregateOperations.toList;
 import static com.hazelcast.jet.function.DistributedComparator.comparing;
 import static com.hazelcast.jet.function.DistributedFunctions.entryValue;
@@ -32,7 +34,9 @@ import static com.hazelcast.jet.pipeline.JoinClause.joinMapEntries;
 import static com.hazelcast.jet.pipeline.JournalInitialPosition.START_FROM_CURRENT;
 import static com.hazelcast.jet.pipeline.JournalInitialPosition.START_FROM_OLDEST;
 import static com.hazelcast.jet.pipeline.Sources.list;
+import static com.hazelcast.jet.pipeline.WindowDefinition.session;
 import static com.hazelcast.jet.pipeline.WindowDefinition.sliding;
+import static java.util.concurrent.TimeUnit.MINUTES;
 
 public class CheatSheet {
     static Pipeline p;
@@ -144,6 +148,25 @@ public class CheatSheet {
         //end::s9[]
     }
 
+    static void s9a() {
+        StreamStageWithKey<PageVisit, Integer> pageVisits =
+                p.<PageVisit>drawFrom(Sources.mapJournal("pageVisits",
+                        mapPutEvents(), mapEventNewValue(), START_FROM_OLDEST))
+                        .addTimestamps(PageVisit::timestamp, 1000)
+                        .groupingKey(PageVisit::userId);
+        StreamStageWithKey<Payment, Integer> payments =
+                p.<Payment>drawFrom(Sources.mapJournal("payments",
+                        mapPutEvents(), mapEventNewValue(), START_FROM_OLDEST))
+                        .addTimestamps(Payment::timestamp, 1000)
+                        .groupingKey(Payment::userId);
+        //tag::s9a[]
+        StreamStage<TimestampedEntry<Integer, Tuple2<Long, Long>>> sessions =
+                pageVisits.window(session(MINUTES.toMillis(30)))
+                          .aggregate2(payments, aggregateOperation2(
+                                  counting(), summingLong(Payment::amount)));
+        //end::s9a[]
+    }
+
     static void s10() {
         //tag::s10[]
         Pipeline p = Pipeline.create();
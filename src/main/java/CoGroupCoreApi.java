@@ -0,0 +1,103 @@
+import com.hazelcast.jet.Jet;
+import com.hazelcast.jet.JetInstance;
+import com.hazelcast.jet.core.DAG;
+import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.processor.Processors;
+import com.hazelcast.jet.core.processor.SinkProcessors;
+import com.hazelcast.jet.core.processor.SourceProcessors;
+import com.hazelcast.jet.datamodel.ItemsByTag;
+import com.hazelcast.jet.datamodel.Tag;
+import com.hazelcast.jet.function.DistributedComparator;
+import datamodel.AddToCart;
+import datamodel.Delivery;
+import datamodel.PageVisit;
+import datamodel.Payment;
+import expertzone.SpillingCoGroupP;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.core.Edge.from;
+import static java.util.Arrays.asList;
+
+public class CoGroupCoreApi {
+
+    public static void main(String[] args) {
+        JetInstance jet = Jet.newJetInstance();
+        Jet.newJetInstance();
+        try {
+            List<PageVisit> visits = jet.getList("pageVisit");
+            List<AddToCart> carts = jet.getList("addToCart");
+            List<Payment> payments = jet.getList("payment");
+            List<Delivery> deliveries = jet.getList("delivery");
+            long now = System.currentTimeMillis();
+            for (int userId = 0; userId < 10; userId++) {
+                for (int i = 0; i <= userId % 4; i++) {
+                    visits.add(new PageVisit(userId, now + i, 100 + 10 * i));
+                }
+                for (int i = 0; i < userId % 3; i++) {
+                    carts.add(new AddToCart(userId, now + i, 1 + i));
+                }
+                if (userId % 2 == 0) {
+                    payments.add(new Payment(userId, now, 10 * userId));
+                    deliveries.add(new Delivery(userId, now, 1 + userId % 5));
+                }
+            }
+
+            jet.newJob(buildDag()).join();
+            jet.getList("result").forEach(System.out::println);
+            // Expected output, in no particular order:
+            // User ID 0: 1 visits, 0 add-to-carts, 1 payments, 1 deliveries
+            // User ID 1: 2 visits, 1 add-to-carts, 0 payments, 0 deliveries
+            // User ID 2: 3 visits, 2 add-to-carts, 1 payments, 1 deliveries
+            // ...
+        } finally {
+            Jet.shutdownAll();
+        }
+    }
+
+    static DAG buildDag() {
+        DAG dag = new DAG();
+        Vertex pageVisits = dag.newVertex("page-visits", SourceProcessors.readListP("pageVisit"));
+        Vertex addToCarts = dag.newVertex("add-to-carts", SourceProcessors.readListP("addToCart"));
+        Vertex payments = dag.newVertex("payments", SourceProcessors.readListP("payment"));
+        Vertex deliveries = dag.newVertex("deliveries", SourceProcessors.readListP("delivery"));
+//tag::s1[]
+        Vertex coGroup = dag.newVertex("co-group", SpillingCoGroupP.<Integer>coGroupToListsP(
+                asList((PageVisit visit) -> visit.userId(),
+                       (AddToCart cart) -> cart.userId(),
+                       (Payment payment) -> payment.userId(),
+                       (Delivery delivery) -> delivery.userId()),
+                DistributedComparator.naturalOrder(),
+                1_000_000
+        ));
+//end::s1[]
+        Tag<List<PageVisit>> visitTag = Tag.tag0();
+        Tag<List<AddToCart>> cartTag = Tag.tag1();
+        Tag<List<Payment>> payTag = Tag.tag2();
+        Tag<List<Delivery>> deliveryTag = Tag.tag(3);
+        Vertex format = dag.newVertex("format", Processors.mapP((Entry<Integer, ItemsByTag> e) -> {
+            ItemsByTag ibt = e.getValue();
+            return String.format("User ID %d: %d visits, %d add-to-carts," +
+                                 " %d payments, %d deliveries",
+                    e.getKey(), ibt.get(visitTag).size(), ibt.get(cartTag).size(),
+                    ibt.get(payTag).size(), ibt.get(deliveryTag).size());
+        }));
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeListP("result"));
+
+        return dag
+//tag::s2[]
+                .edge(between(pageVisits, coGroup)
+                        .partitioned(PageVisit::userId).distributed())
+                .edge(from(addToCarts).to(coGroup, 1)
+                        .partitioned(AddToCart::userId).distributed())
+                .edge(from(payments).to(coGroup, 2)
+                        .partitioned(Payment::userId).distributed())
+                .edge(from(deliveries).to(coGroup, 3)
+                        .partitioned(Delivery::userId).distributed())
+//end::s2[]
+                .edge(between(coGroup, format))
+                .edge(between(format, sink));
+    }
+}
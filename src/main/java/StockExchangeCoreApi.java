@@ -1,24 +1,39 @@
+import com.hazelcast.jet.aggregate.AggregateOperation1;
 import com.hazelcast.jet.core.DAG;
 import com.hazelcast.jet.core.SlidingWindowPolicy;
 import com.hazelcast.jet.core.TimestampKind;
 import com.hazelcast.jet.core.Vertex;
+import com.hazelcast.jet.core.WatermarkPolicy;
 import com.hazelcast.jet.core.processor.Processors;
 import com.hazelcast.jet.core.processor.SinkProcessors;
 import com.hazelcast.jet.core.processor.SourceProcessors;
 import com.hazelcast.jet.datamodel.TimestampedEntry;
+import com.hazelcast.jet.function.DistributedComparator;
 import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
 import com.hazelcast.jet.function.DistributedToLongFunction;
 import com.hazelcast.jet.pipeline.ContextFactory;
 import com.hazelcast.jet.pipeline.JournalInitialPosition;
 import com.hazelcast.map.journal.EventJournalMapEvent;
 import datamodel.Trade;
+import expertzone.AccumulateBatchesByFrameP;
+import expertzone.AdaptiveLagPolicy;
+import expertzone.BatchEventsP;
+import expertzone.EventBatch;
+import expertzone.HotKeySalter;
+import expertzone.HotKeySalter.Salted;
+import expertzone.LateEventsP;
+import expertzone.RingBufferSlidingWindowP;
+import expertzone.TwoStacksSlidingWindowP;
 
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.aggregate.AggregateOperations.maxBy;
 import static com.hazelcast.jet.core.Edge.between;
+import static com.hazelcast.jet.core.Edge.from;
 import static com.hazelcast.jet.core.Partitioner.HASH_CODE;
 import static com.hazelcast.jet.core.SlidingWindowPolicy.slidingWinPolicy;
 import static com.hazelcast.jet.core.WatermarkEmissionPolicy.emitByFrame;
@@ -26,9 +41,11 @@ import static com.hazelcast.jet.core.WatermarkGenerationParams.wmGenParams;
 import static com.hazelcast.jet.core.WatermarkPolicies.limitingLag;
 import static com.hazelcast.jet.core.processor.Processors.mapUsingContextP;
 import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
 import static com.hazelcast.jet.function.DistributedPredicate.alwaysTrue;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class StockExchangeCoreApi {
@@ -94,4 +111,276 @@ public class StockExchangeCoreApi {
                 .edge(between(formatOutput, sink));
 //end::s1[]
     }
+
+    static DAG buildDagWithHotKeySalting() {
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+//tag::s2[]
+        Vertex salt = dag.newVertex("salt", mapUsingContextP(
+                ContextFactory.withCreateFn(x -> new HotKeySalter<Integer>(
+                        Runtime.getRuntime().availableProcessors(), 0.05, 10_000)),
+                (HotKeySalter<Integer> salter, Trade trade) -> salter.salt(trade, trade.productId())
+        ));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList((Salted<Trade> salted) -> salted.item().productId()),
+                        singletonList((Salted<Trade> salted) -> salted.item().timestamp()),
+                        TimestampKind.EVENT,
+                        winPolicy, counting()
+                ));
+//end::s2[]
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+            Processors.combineToSlidingWindowP(winPolicy, counting(),
+                    TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+//tag::s3[]
+                .edge(between(tradeSource, salt))
+                .edge(between(salt, slidingStage1)
+                        .partitioned(wholeItem(), HASH_CODE))
+//end::s3[]
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithLargestTrade() {
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+//tag::s4[]
+        AggregateOperation1<Trade, ?, Trade> largestTrade =
+                maxBy(DistributedComparator.comparingLong(Trade::worth));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList((Trade t) -> t.productId()),
+                        singletonList((Trade t) -> t.timestamp()),
+                        TimestampKind.EVENT,
+                        winPolicy, largestTrade
+                ));
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+                TwoStacksSlidingWindowP.combineToSlidingWindowP(winPolicy, largestTrade,
+                        TimestampedEntry::fromWindowResult));
+//end::s4[]
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+                .edge(between(tradeSource, slidingStage1)
+                        .partitioned(Trade::productId, HASH_CODE))
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithLateEvents() {
+        DistributedToLongFunction<? super Trade> timestampFn = Trade::timestamp;
+        DistributedFunction<? super Trade, ?> keyFn = Trade::productId;
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+//tag::s5[]
+        Vertex lateEvents = dag.newVertex("late-events",
+                LateEventsP.lateEventsP(timestampFn, winPolicy));
+        Vertex lateTradeSink = dag.newVertex("late-trade-sink",
+                SinkProcessors.writeListP("late-trades"));
+        Vertex lateCountSink = dag.newVertex("late-count-sink",
+                SinkProcessors.writeFileP("stock-exchange-late-counts",
+                        Object::toString, UTF_8, false));
+//end::s5[]
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList(keyFn),
+                        singletonList(timestampFn),
+                        TimestampKind.EVENT,
+                        winPolicy, counting()
+                ));
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+            Processors.combineToSlidingWindowP(winPolicy, counting(),
+                    TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+//tag::s6[]
+                .edge(between(tradeSource, lateEvents))
+                .edge(from(lateEvents, 0).to(slidingStage1)
+                        .partitioned(keyFn, HASH_CODE))
+                .edge(from(lateEvents, 1).to(lateTradeSink))
+                .edge(from(lateEvents, 2).to(lateCountSink))
+//end::s6[]
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithAdaptiveLag() {
+        DistributedToLongFunction<? super Trade> timestampFn = Trade::timestamp;
+        DistributedFunction<? super Trade, ?> keyFn = Trade::productId;
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+//tag::s7[]
+        Vertex tradeSource = tradeSource(dag, winPolicy,
+                AdaptiveLagPolicy.adaptiveLag(0.999, 10, SECONDS.toMillis(3)));
+//end::s7[]
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList(keyFn),
+                        singletonList(timestampFn),
+                        TimestampKind.EVENT,
+                        winPolicy, counting()
+                ));
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+            Processors.combineToSlidingWindowP(winPolicy, counting(),
+                    TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+                .edge(between(tradeSource, slidingStage1)
+                        .partitioned(keyFn, HASH_CODE))
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithEarlyResults() {
+        DistributedToLongFunction<? super Trade> timestampFn = Trade::timestamp;
+        DistributedFunction<? super Trade, ?> keyFn = Trade::productId;
+//tag::s8[]
+        // one-minute windows made of one-second frames
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                MINUTES.toMillis(1), SECONDS.toMillis(1));
+//end::s8[]
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList(keyFn),
+                        singletonList(timestampFn),
+                        TimestampKind.EVENT,
+                        winPolicy, counting()
+                ));
+//tag::s9[]
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+                TwoStacksSlidingWindowP.combineWithEarlyResultsP(
+                        winPolicy, MINUTES.toMillis(1), counting(), SECONDS.toMillis(1)));
+//end::s9[]
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+                .edge(between(tradeSource, slidingStage1)
+                        .partitioned(keyFn, HASH_CODE))
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithColumnarBatches() {
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+//tag::s10[]
+        Vertex batch = dag.newVertex("batch",
+                BatchEventsP.batchEventsP(
+                        (Trade t) -> t.timestamp(),
+                        (Trade t) -> t.productId(),
+                        (Trade t) -> 1L,
+                        1024, 64));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                AccumulateBatchesByFrameP.accumulateBatchesByFrameP(winPolicy));
+//end::s10[]
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+            Processors.combineToSlidingWindowP(winPolicy, counting(),
+                    TimestampedEntry::fromWindowResult));
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        batch.localParallelism(1);
+
+        return dag
+//tag::s11[]
+                .edge(between(tradeSource, batch))
+                .edge(between(batch, slidingStage1)
+                        .partitioned(EventBatch::bucket, HASH_CODE))
+//end::s11[]
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    static DAG buildDagWithFrameRings() {
+        SlidingWindowPolicy winPolicy = slidingWinPolicy(
+                SLIDING_WINDOW_LENGTH_MILLIS, SLIDE_STEP_MILLIS);
+
+        DAG dag = new DAG();
+        Vertex tradeSource = tradeSource(dag, winPolicy, limitingLag(SECONDS.toMillis(3)));
+        Vertex slidingStage1 = dag.newVertex("sliding-stage-1",
+                Processors.accumulateByFrameP(
+                        singletonList((Trade t) -> t.productId()),
+                        singletonList((Trade t) -> t.timestamp()),
+                        TimestampKind.EVENT,
+                        winPolicy, counting()
+                ));
+//tag::s12[]
+        Vertex slidingStage2 = dag.newVertex("sliding-stage-2",
+                RingBufferSlidingWindowP.combineSumsToSlidingWindowP(winPolicy,
+                        TimestampedEntry::fromWindowResult));
+//end::s12[]
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeFileP(
+                OUTPUT_DIR_NAME, Object::toString, UTF_8, false));
+
+        return dag
+                .edge(between(tradeSource, slidingStage1)
+                        .partitioned(Trade::productId, HASH_CODE))
+                .edge(between(slidingStage1, slidingStage2)
+                        .partitioned(entryKey(), HASH_CODE)
+                        .distributed())
+                .edge(between(slidingStage2, sink));
+    }
+
+    /**
+     * Creates the trade source of the variants of {@link #buildDag()}. It
+     * differs from the one in {@code buildDag()} only in the watermark
+     * policy, if at all.
+     */
+    private static Vertex tradeSource(
+            DAG dag, SlidingWindowPolicy winPolicy, DistributedSupplier<WatermarkPolicy> wmPolicy
+    ) {
+        Vertex tradeSource = dag.newVertex("trade-source",
+                SourceProcessors.<Trade, Long, Trade>streamMapP(
+                        TRADES_MAP_NAME,
+                        alwaysTrue(),
+                        EventJournalMapEvent::getNewValue,
+                        JournalInitialPosition.START_FROM_OLDEST,
+                        wmGenParams(
+                                Trade::timestamp,
+                                wmPolicy,
+                                emitByFrame(winPolicy),
+                                SECONDS.toMillis(3)
+                        )));
+        tradeSource.localParallelism(1);
+        return tradeSource;
+    }
 }
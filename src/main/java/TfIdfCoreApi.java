@@ -14,6 +14,8 @@
  * limitations under the License.
  */
 
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetInstance;
 import com.hazelcast.jet.Traverser;
 import com.hazelcast.jet.Util;
 import com.hazelcast.jet.core.AbstractProcessor;
@@ -24,20 +26,25 @@ import com.hazelcast.jet.core.processor.SinkProcessors;
 import com.hazelcast.jet.function.DistributedBiFunction;
 import com.hazelcast.jet.function.DistributedFunction;
 import com.hazelcast.jet.pipeline.ContextFactory;
+import expertzone.WordTokenizer;
+import tfidf.MappedDocTokenizeP;
+import tfidf.PreCountingTokenizeP;
+import tfidf.SharedStopwordsTokenizeP;
+import tfidf.TfIdfQueryEngine;
+import tfidf.TfIdfQueryEngine.QueryResult;
 
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
 import static com.hazelcast.jet.Traversers.lazy;
@@ -45,12 +52,14 @@ import static com.hazelcast.jet.Traversers.traverseIterable;
 import static com.hazelcast.jet.Traversers.traverseStream;
 import static com.hazelcast.jet.Util.entry;
 import static com.hazelcast.jet.aggregate.AggregateOperations.counting;
+import static com.hazelcast.jet.aggregate.AggregateOperations.summingLong;
 import static com.hazelcast.jet.core.Edge.between;
 import static com.hazelcast.jet.core.Edge.from;
 import static com.hazelcast.jet.core.Partitioner.HASH_CODE;
 import static com.hazelcast.jet.core.processor.Processors.aggregateByKeyP;
 import static com.hazelcast.jet.core.processor.Processors.flatMapUsingContextP;
 import static com.hazelcast.jet.core.processor.SourceProcessors.readMapP;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
 import static com.hazelcast.jet.function.DistributedFunctions.wholeItem;
 import static java.util.Collections.singletonList;
 import static java.util.stream.Collectors.toList;
@@ -58,7 +67,6 @@ import static java.util.stream.Collectors.toSet;
 
 public class TfIdfCoreApi {
 
-    private static final Pattern DELIMITER = Pattern.compile("\\W+");
     private static final String DOCID_NAME = "docId_name";
     private static final String INVERTED_INDEX = "inverted-index";
 
@@ -131,6 +139,132 @@ public class TfIdfCoreApi {
                 .edge(between(tfidf, sink));
     }
 
+    private static DAG createDagWithMappedReader() {
+        DistributedFunction<Entry<Entry<?, String>, ?>, String> byWord = item -> item.getKey().getValue();
+
+        DAG dag = new DAG();
+        Vertex stopwordSource = dag.newVertex("stopword-source", StopwordsP::new);
+        Vertex docSource = dag.newVertex("doc-source", readMapP(DOCID_NAME));
+        Vertex docCount = dag.newVertex("doc-count", Processors.aggregateP(counting()));
+        //tag::s13[]
+        Vertex tokenize = dag.newVertex("tokenize",
+                () -> new MappedDocTokenizeP(TfIdfCoreApi::docPath));
+        //end::s13[]
+        Vertex tf = dag.newVertex("tf", aggregateByKeyP(
+                singletonList(wholeItem()), counting(), Util::entry));
+        Vertex tfidf = dag.newVertex("tf-idf", TfIdfP::new);
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP(INVERTED_INDEX));
+
+        stopwordSource.localParallelism(1);
+        docSource.localParallelism(1);
+        docCount.localParallelism(1);
+
+        //tag::s14[]
+        dag.edge(between(stopwordSource, tokenize).broadcast().priority(-1))
+           .edge(from(docSource, 1).to(tokenize, 1).distributed().broadcast())
+           .edge(between(tokenize, tf).distributed().partitioned(wholeItem()));
+        //end::s14[]
+
+        return dag
+                .edge(between(docSource, docCount).distributed().broadcast())
+                .edge(between(docCount, tfidf).broadcast().priority(-1))
+                .edge(from(tf).to(tfidf, 1).distributed().partitioned(byWord, HASH_CODE))
+                .edge(between(tfidf, sink));
+    }
+
+    private static DAG createDagWithPreCounting() {
+        DistributedFunction<Entry<Entry<?, String>, ?>, String> byWord = item -> item.getKey().getValue();
+
+        DAG dag = new DAG();
+        Vertex stopwordSource = dag.newVertex("stopword-source", StopwordsP::new);
+        Vertex docSource = dag.newVertex("doc-source", readMapP(DOCID_NAME));
+        Vertex docCount = dag.newVertex("doc-count", Processors.aggregateP(counting()));
+        Vertex docLines = dag.newVertex("doc-lines", flatMapUsingContextP(
+                ContextFactory.withCreateFn(jet -> null).nonCooperative(),
+                (Object ctx, Entry<Long, String> e) ->
+                traverseStream(docLines("books/" + e.getValue())
+                    .map(line -> entry(e.getKey(), line)))));
+        //tag::s16[]
+        Vertex tokenize = dag.newVertex("tokenize", PreCountingTokenizeP::new);
+        Vertex tf = dag.newVertex("tf", aggregateByKeyP(
+                singletonList(entryKey()),
+                summingLong((Entry<Entry<Long, String>, Long> e) -> e.getValue()),
+                Util::entry));
+        //end::s16[]
+        Vertex tfidf = dag.newVertex("tf-idf", TfIdfP::new);
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP(INVERTED_INDEX));
+
+        stopwordSource.localParallelism(1);
+        docSource.localParallelism(1);
+        docCount.localParallelism(1);
+        docLines.localParallelism(1);
+
+        return dag
+                .edge(between(stopwordSource, tokenize).broadcast().priority(-1))
+                .edge(from(docLines).to(tokenize, 1))
+                .edge(between(docSource, docCount).distributed().broadcast())
+                .edge(from(docSource, 1).to(docLines))
+                //tag::s17[]
+                .edge(between(tokenize, tf).partitioned(entryKey(), HASH_CODE))
+                //end::s17[]
+                .edge(between(docCount, tfidf).broadcast().priority(-1))
+                .edge(from(tf).to(tfidf, 1).distributed().partitioned(byWord, HASH_CODE))
+                .edge(between(tfidf, sink));
+    }
+
+    private static DAG createDagWithSharedStopwords() {
+        DistributedFunction<Entry<Entry<?, String>, ?>, String> byWord = item -> item.getKey().getValue();
+
+        DAG dag = new DAG();
+        Vertex docSource = dag.newVertex("doc-source", readMapP(DOCID_NAME));
+        Vertex docCount = dag.newVertex("doc-count", Processors.aggregateP(counting()));
+        Vertex docLines = dag.newVertex("doc-lines", flatMapUsingContextP(
+                ContextFactory.withCreateFn(jet -> null).nonCooperative(),
+                (Object ctx, Entry<Long, String> e) ->
+                traverseStream(docLines("books/" + e.getValue())
+                    .map(line -> entry(e.getKey(), line)))));
+        //tag::s18[]
+        Vertex tokenize = dag.newVertex("tokenize", SharedStopwordsTokenizeP.tokenizeP(
+                () -> docLines("stopwords.txt").collect(toSet())));
+        //end::s18[]
+        Vertex tf = dag.newVertex("tf", aggregateByKeyP(
+                singletonList(wholeItem()), counting(), Util::entry));
+        Vertex tfidf = dag.newVertex("tf-idf", TfIdfP::new);
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP(INVERTED_INDEX));
+
+        docSource.localParallelism(1);
+        docCount.localParallelism(1);
+        docLines.localParallelism(1);
+
+        return dag
+                .edge(between(docSource, docCount).distributed().broadcast())
+                .edge(from(docSource, 1).to(docLines))
+                //tag::s19[]
+                .edge(between(docLines, tokenize))
+                //end::s19[]
+                .edge(between(tokenize, tf).partitioned(wholeItem(), HASH_CODE))
+                .edge(between(docCount, tfidf).broadcast().priority(-1))
+                .edge(from(tf).to(tfidf, 1).distributed().partitioned(byWord, HASH_CODE))
+                .edge(between(tfidf, sink));
+    }
+
+    private static void search(JetInstance jet, String query) {
+        //tag::s15[]
+        IMap<String, List<Entry<Long, Double>>> index = jet.getMap(INVERTED_INDEX);
+        TfIdfQueryEngine<List<Entry<Long, Double>>> engine = TfIdfQueryEngine.boxed(index);
+        QueryResult result = engine.search(query, 10);
+        System.out.println(result);
+        //end::s15[]
+    }
+
+    private static Path docPath(String name) {
+        try {
+            return Paths.get(TfIdfCoreApi.class.getResource("books/" + name).toURI());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private static Stream<String> docLines(String name) {
         try {
             return Files.lines(Paths.get(TfIdfCoreApi.class.getResource(name).toURI()));
@@ -151,11 +285,12 @@ public class TfIdfCoreApi {
     //tag::s7[]
     private static class TokenizeP extends AbstractProcessor {
         private Set<String> stopwords;
+        private final WordTokenizer tokenizer = new WordTokenizer();
         private final FlatMapper<Entry<Long, String>, Entry<Long, String>>
-                flatMapper = flatMapper(e -> traverseStream(
-                Arrays.stream(DELIMITER.split(e.getValue().toLowerCase()))
-                      .filter(word -> !stopwords.contains(word))
-                      .map(word -> entry(e.getKey(), word))));
+                flatMapper = flatMapper(e ->
+                tokenizer.tokenize(e.getValue())
+                         .filter(word -> !stopwords.contains(word))
+                         .map(word -> entry(e.getKey(), word)));
 
         @Override
         @SuppressWarnings("unchecked")
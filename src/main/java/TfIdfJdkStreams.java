@@ -14,6 +14,9 @@
  * limitations under the License.
  */
 
+import tfidf.ForkJoinTfIdf;
+import tfidf.PostingList;
+
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -22,6 +25,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
@@ -42,6 +46,7 @@ public class TfIdfJdkStreams {
     Set<String> stopwords;
     Map<String, List<Entry<Long, Double>>> invertedIndex;
     Map<Long, String> docId2Name;
+    Map<String, PostingList> primitiveInvertedIndex;
 
     void buildInvertedIndex() {
 
@@ -81,6 +86,13 @@ public class TfIdfJdkStreams {
         // end::s4[]
     }
 
+    void buildInvertedIndexForkJoin() {
+        // tag::s6[]
+        primitiveInvertedIndex = new ForkJoinTfIdf(Paths::get, stopwords)
+                .buildInvertedIndex(ForkJoinPool.commonPool(), docId2Name);
+        // end::s6[]
+    }
+
     //tag::s5[]
     private static Entry<Long, Double> tfidfEntry(
             Entry<Entry<Long, String>, Long> tfEntry, Double idf
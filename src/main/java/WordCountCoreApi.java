@@ -8,6 +8,10 @@ import com.hazelcast.jet.core.Vertex;
 import com.hazelcast.jet.core.processor.Processors;
 import com.hazelcast.jet.core.processor.SinkProcessors;
 import com.hazelcast.jet.core.processor.SourceProcessors;
+import com.hazelcast.jet.pipeline.ContextFactory;
+import expertzone.HotKeySalter;
+import expertzone.HotKeySalter.Salted;
+import expertzone.SumByKeyP;
 
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
@@ -98,4 +102,62 @@ public class WordCountCoreApi {
             Jet.shutdownAll();
         }
     }
+
+    static DAG buildDagWithHotKeySalting() {
+        DAG dag = new DAG();
+        Vertex source = dag.newVertex("source", SourceProcessors.readMapP("lines"));
+//tag::s7[]
+        Pattern delimiter = Pattern.compile("\\W+");
+        Vertex tokenize = dag.newVertex("tokenize", Processors.flatMapUsingContextP(
+                ContextFactory.withCreateFn(jet -> new HotKeySalter<String>(
+                        Runtime.getRuntime().availableProcessors(), 0.01, 10_000)),
+                (HotKeySalter<String> salter, Entry<Integer, String> e) ->
+                        traverseArray(delimiter.split(e.getValue().toLowerCase()))
+                                .filter(word -> !word.isEmpty())
+                                .map(word -> salter.salt(word, word)))
+        );
+        Vertex accumulate = dag.newVertex("accumulate",
+                Processors.accumulateByKeyP(
+                        singletonList((Salted<String> salted) -> salted.key()), counting())
+        );
+//end::s7[]
+        Vertex combine = dag.newVertex("combine",
+                Processors.combineByKeyP(counting(), Util::entry)
+        );
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP("counts"));
+//tag::s8[]
+        dag.edge(between(source, tokenize))
+           .edge(between(tokenize, accumulate)
+                   .partitioned(wholeItem(), Partitioner.HASH_CODE))
+//end::s8[]
+           .edge(between(accumulate, combine)
+                   .distributed()
+                   .partitioned(entryKey()))
+           .edge(between(combine, sink));
+        return dag;
+    }
+
+    static DAG buildDagWithPrimitiveCounting() {
+        DAG dag = new DAG();
+        Vertex source = dag.newVertex("source", SourceProcessors.readMapP("lines"));
+        Pattern delimiter = Pattern.compile("\\W+");
+        Vertex tokenize = dag.newVertex("tokenize",
+                Processors.flatMapP((Entry<Integer, String> e) ->
+                        traverseArray(delimiter.split(e.getValue().toLowerCase()))
+                                .filter(word -> !word.isEmpty()))
+        );
+//tag::s6[]
+        Vertex accumulate = dag.newVertex("accumulate", SumByKeyP.countByKeyP(wholeItem()));
+        Vertex combine = dag.newVertex("combine", SumByKeyP.combineSumsByKeyP());
+//end::s6[]
+        Vertex sink = dag.newVertex("sink", SinkProcessors.writeMapP("counts"));
+        dag.edge(between(source, tokenize))
+           .edge(between(tokenize, accumulate)
+                   .partitioned(wholeItem(), Partitioner.HASH_CODE))
+           .edge(between(accumulate, combine)
+                   .distributed()
+                   .partitioned(entryKey()))
+           .edge(between(combine, sink));
+        return dag;
+    }
 }
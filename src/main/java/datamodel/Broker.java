@@ -20,6 +20,14 @@ import java.io.Serializable;
 
 public class Broker implements Serializable {
     private int id;
+
+    public Broker() {
+    }
+
+    public Broker(int id) {
+        this.id = id;
+    }
+
     public int id() {
         return id;
     }
@@ -20,6 +20,14 @@ import java.io.Serializable;
 
 public class Market implements Serializable {
     private int id;
+
+    public Market() {
+    }
+
+    public Market(int id) {
+        this.id = id;
+    }
+
     public int id() {
         return id;
     }
@@ -2,6 +2,14 @@ package datamodel;
 
 public class Product {
     private int id;
+
+    public Product() {
+    }
+
+    public Product(int id) {
+        this.id = id;
+    }
+
     public int id() {
         return id;
     }
@@ -9,6 +9,13 @@ public class Trade extends Event {
         super(userId, timestamp);
     }
 
+    public Trade(int userId, long timestamp, int productId, int brokerId, int marketId) {
+        super(userId, timestamp);
+        this.productId = productId;
+        this.brokerId = brokerId;
+        this.marketId = marketId;
+    }
+
     public int productId() {
         return productId;
     }
@@ -0,0 +1,274 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.accumulator.LongAccumulator;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.BroadcastKey;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.datamodel.TimestampedEntry;
+import com.hazelcast.jet.function.DistributedSupplier;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.Traversers.traverseIterable;
+import static com.hazelcast.jet.Util.entry;
+import static com.hazelcast.jet.core.BroadcastKey.broadcastKey;
+
+/**
+ * A replacement for the first stage of a two-stage sliding window
+ * aggregation, {@code accumulateByFrameP()}, with the {@code counting()}
+ * or {@code summingLong()} aggregate operation, that takes its input in
+ * the columnar {@link EventBatch}es of {@link BatchEventsP}.
+ * <p>
+ * The general-purpose processor is called once per event and each time
+ * looks up the frame and then the key in a {@code HashMap}, updating a
+ * {@code LongAccumulator}. This one is called once per batch and runs a
+ * tight loop over its arrays. Consecutive events usually belong to the
+ * same frame, so it only looks up the frame when it changes; the sums of
+ * a frame are in an open-addressed table of primitive {@code long} keys
+ * and sums.
+ * <p>
+ * It emits the same {@code TimestampedEntry<Long, LongAccumulator>} items
+ * as {@code accumulateByFrameP()} when the watermark passes the frame,
+ * so {@code combineToSlidingWindowP()} with the same aggregate operation
+ * can be the second stage. The key is the {@code long} key from the
+ * batch, boxed. Events of frames the watermark has already passed are
+ * dropped.
+ * <p>
+ * The snapshot holds one entry per key and frame the processor hasn't
+ * emitted yet, with the {@code (frameTs, key)} pair as the key, and the
+ * watermark it last received. A key may be restored to a different
+ * processor than the one that saved it, which is fine since the second
+ * stage combines the sums of a frame from all the processors anyway.
+ */
+public final class AccumulateBatchesByFrameP extends AbstractProcessor {
+
+    private final SlidingWindowPolicy winPolicy;
+    private final Map<Long, FrameSums> frames = new HashMap<>();
+    private final FrameTraverser frameTraverser = new FrameTraverser();
+    private long currentWm = Long.MIN_VALUE;
+    private long minRestoredWm = Long.MAX_VALUE;
+    private Traverser<Object> flushTraverser;
+    private Traverser<Entry<?, ?>> snapshotTraverser;
+
+    private AccumulateBatchesByFrameP(SlidingWindowPolicy winPolicy) {
+        this.winPolicy = winPolicy;
+    }
+
+    /**
+     * Returns the supplier of processors that sum the values of the events
+     * by key and frame of the given window policy. To count the events,
+     * batch them with a {@code valueFn} that returns 1.
+     */
+    public static DistributedSupplier<AccumulateBatchesByFrameP> accumulateBatchesByFrameP(
+            SlidingWindowPolicy winPolicy
+    ) {
+        return () -> new AccumulateBatchesByFrameP(winPolicy);
+    }
+
+    @Override
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        EventBatch batch = (EventBatch) item;
+        long frameTs = Long.MIN_VALUE;
+        FrameSums sums = null;
+        for (int i = 0; i < batch.size(); i++) {
+            long ts = winPolicy.higherFrameTs(batch.timestamp(i));
+            if (ts <= currentWm) {
+                continue;
+            }
+            if (ts != frameTs) {
+                frameTs = ts;
+                sums = frames.computeIfAbsent(ts, x -> new FrameSums());
+            }
+            sums.add(batch.key(i), batch.value(i));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        if (flushTraverser == null) {
+            currentWm = wm.timestamp();
+            flushTraverser = frameTraverser.upTo(currentWm).append(wm);
+        }
+        if (!emitFromTraverser(flushTraverser)) {
+            return false;
+        }
+        flushTraverser = null;
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        if (flushTraverser == null) {
+            flushTraverser = frameTraverser.upTo(Long.MAX_VALUE);
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    @Override
+    public boolean saveToSnapshot() {
+        if (snapshotTraverser == null) {
+            snapshotTraverser = traverseIterable(frames.entrySet())
+                    .<Entry<?, ?>>flatMap(e -> e.getValue().snapshotEntries(e.getKey()))
+                    .append(entry(broadcastKey(Keys.CURRENT_WATERMARK), currentWm));
+        }
+        if (!emitFromTraverserToSnapshot(snapshotTraverser)) {
+            return false;
+        }
+        snapshotTraverser = null;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void restoreFromSnapshot(@Nonnull Object key, @Nonnull Object value) {
+        if (key instanceof BroadcastKey) {
+            minRestoredWm = Math.min(minRestoredWm, (long) value);
+            return;
+        }
+        Entry<Long, Long> frameAndKey = (Entry<Long, Long>) key;
+        frames.computeIfAbsent(frameAndKey.getKey(), x -> new FrameSums())
+              .add(frameAndKey.getValue(), (long) value);
+    }
+
+    @Override
+    public boolean finishSnapshotRestore() {
+        if (minRestoredWm != Long.MAX_VALUE) {
+            currentWm = minRestoredWm;
+        }
+        return true;
+    }
+
+    private enum Keys {
+        CURRENT_WATERMARK
+    }
+
+    /**
+     * Emits the sums of the frames up to the limit, oldest frame first, and
+     * forgets the frames.
+     */
+    private final class FrameTraverser implements Traverser<Object> {
+        private long[] frameTimestamps = new long[0];
+        private int frameIndex;
+        private long frameTs;
+        private FrameSums sums;
+        private int slot;
+
+        Traverser<Object> upTo(long limit) {
+            frameTimestamps = frames.keySet().stream()
+                                    .mapToLong(Long::longValue)
+                                    .filter(ts -> ts <= limit)
+                                    .sorted()
+                                    .toArray();
+            frameIndex = 0;
+            sums = null;
+            return this;
+        }
+
+        @Override
+        public Object next() {
+            while (true) {
+                if (sums != null) {
+                    for (; slot < sums.keys.length; slot++) {
+                        if (sums.used[slot]) {
+                            TimestampedEntry<Long, LongAccumulator> result = new TimestampedEntry<>(
+                                    frameTs, sums.keys[slot], new LongAccumulator(sums.totals[slot]));
+                            slot++;
+                            return result;
+                        }
+                    }
+                    sums = null;
+                }
+                if (frameIndex == frameTimestamps.length) {
+                    return null;
+                }
+                frameTs = frameTimestamps[frameIndex++];
+                sums = frames.remove(frameTs);
+                slot = 0;
+            }
+        }
+    }
+
+    /**
+     * An open-addressed hash table from {@code long} keys to their {@code
+     * long} sums.
+     */
+    private static final class FrameSums {
+        private long[] keys = new long[16];
+        private long[] totals = new long[16];
+        private boolean[] used = new boolean[16];
+        private int size;
+
+        Traverser<Entry<?, ?>> snapshotEntries(long frameTs) {
+            return new Traverser<Entry<?, ?>>() {
+                private int slot;
+
+                @Override
+                public Entry<?, ?> next() {
+                    for (; slot < keys.length; slot++) {
+                        if (used[slot]) {
+                            Entry<?, ?> result = entry(entry(frameTs, keys[slot]), totals[slot]);
+                            slot++;
+                            return result;
+                        }
+                    }
+                    return null;
+                }
+            };
+        }
+
+        void add(long key, long value) {
+            int mask = keys.length - 1;
+            int slot = (int) (key * 0x9E3779B97F4A7C15L >>> 32) & mask;
+            for (; used[slot]; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    totals[slot] += value;
+                    return;
+                }
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            totals[slot] = value;
+            if (++size > keys.length >> 1) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldTotals = totals;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length << 1];
+            totals = new long[oldKeys.length << 1];
+            used = new boolean[oldKeys.length << 1];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    add(oldKeys[i], oldTotals[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.core.WatermarkPolicy;
+import com.hazelcast.jet.function.DistributedSupplier;
+
+/**
+ * A watermark policy that lags behind the top observed timestamp by as
+ * much as the stream's disorder requires instead of by a fixed amount.
+ * For each event it records how far behind the top timestamp so far the
+ * event is (zero for an event that is in order) in a histogram and sets
+ * the lag to the configured percentile of these distances, so that
+ * roughly {@code 1 - percentile} of the events come late. The lag stays
+ * between {@code minLag} and {@code maxLag}; until the histogram has
+ * enough samples, it is {@code maxLag}.
+ * <p>
+ * The histogram has log-linear buckets: eight buckets for each power of
+ * two, so the lag it reports is at most 12.5% above the exact percentile.
+ * Recording an event increments one counter. The percentile is
+ * recomputed every {@value #UPDATE_INTERVAL} events and the counters are
+ * halved every {@code halfLife} events, so the lag follows the recent
+ * disorder rather than the whole history of the stream.
+ * <p>
+ * Jet creates a policy instance for each partition of a partitioned
+ * source, so each partition adapts to its own disorder.
+ */
+public final class AdaptiveLagPolicy implements WatermarkPolicy {
+
+    static final int UPDATE_INTERVAL = 256;
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+    private static final int MIN_SAMPLES = 100;
+
+    private final double percentile;
+    private final long minLag;
+    private final long maxLag;
+    private final int halfLife;
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total;
+    private int sinceUpdate;
+    private int sinceDecay;
+
+    private long lag;
+    private long topTs = Long.MIN_VALUE;
+    private long wm = Long.MIN_VALUE;
+
+    /**
+     * @param percentile the share of events that should be on time, for
+     *                   example {@code 0.999}
+     * @param minLag the lower limit of the lag
+     * @param maxLag the upper limit of the lag, also used until there are
+     *               enough samples
+     * @param halfLife the number of events after which the weight of the
+     *                 recorded disorder halves
+     */
+    public AdaptiveLagPolicy(double percentile, long minLag, long maxLag, int halfLife) {
+        if (!(percentile > 0 && percentile <= 1) || minLag < 0 || maxLag < minLag
+                || halfLife < UPDATE_INTERVAL) {
+            throw new IllegalArgumentException("percentile=" + percentile + ", minLag=" + minLag
+                    + ", maxLag=" + maxLag + ", halfLife=" + halfLife);
+        }
+        this.percentile = percentile;
+        this.minLag = minLag;
+        this.maxLag = maxLag;
+        this.halfLife = halfLife;
+        this.lag = maxLag;
+    }
+
+    /**
+     * Returns the supplier of adaptive-lag policies to pass to {@code
+     * wmGenParams()}, with a half-life of 100,000 events.
+     */
+    public static DistributedSupplier<WatermarkPolicy> adaptiveLag(
+            double percentile, long minLag, long maxLag
+    ) {
+        return () -> new AdaptiveLagPolicy(percentile, minLag, maxLag, 100_000);
+    }
+
+    @Override
+    public long reportEvent(long timestamp) {
+        if (timestamp > topTs) {
+            if (topTs != Long.MIN_VALUE) {
+                record(0);
+            }
+            topTs = timestamp;
+        } else {
+            record(topTs - timestamp);
+        }
+        if (topTs - lag > wm) {
+            wm = topTs - lag;
+        }
+        return wm;
+    }
+
+    @Override
+    public long getCurrentWatermark() {
+        return wm;
+    }
+
+    /**
+     * Returns the current lag.
+     */
+    public long lag() {
+        return lag;
+    }
+
+    private void record(long disorder) {
+        counts[bucket(disorder)]++;
+        total++;
+        if (++sinceDecay == halfLife) {
+            sinceDecay = 0;
+            total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i] >>>= 1;
+            }
+        }
+        if (++sinceUpdate == UPDATE_INTERVAL) {
+            sinceUpdate = 0;
+            updateLag();
+        }
+    }
+
+    private void updateLag() {
+        if (total < MIN_SAMPLES) {
+            lag = maxLag;
+            return;
+        }
+        long target = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        int i = 0;
+        while ((seen += counts[i]) < target) {
+            i++;
+        }
+        lag = Math.max(minLag, Math.min(maxLag, bucketUpperBound(i)));
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+}
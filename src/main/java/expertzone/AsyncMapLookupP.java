@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.JetException;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.Processor;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.function.DistributedBiFunction;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Enriches the items with values looked up in an {@code IMap}, like
+ * {@code mapUsingIMap()}, but without waiting for each lookup. {@code
+ * mapUsingIMap()} and a {@code mapUsingContext()} that calls {@code
+ * map.get()} pay the full round trip to the member that owns the key for
+ * every item, one after another. This processor collects the items into
+ * batches and issues a {@code getAsync()} for each distinct key of the
+ * batch, which Hazelcast sends to the key's owner straight away. It
+ * keeps up to {@code maxInFlight} batches waiting for their values and
+ * goes on receiving items meanwhile, so the latency of a round trip is
+ * shared by all the items in flight.
+ * <p>
+ * A batch is sent when it's full. When the inbox runs dry, the partial
+ * batch is sent only if no other batch is in flight; otherwise its items
+ * keep collecting until it fills up or the batches in flight complete.
+ * This way a trickle of items doesn't turn into a stream of one-item
+ * batches, yet an item waits for at most one round trip before its
+ * lookup is sent. A {@code getAll()} would be one request per member instead of one per
+ * key, but it blocks the calling thread, which a cooperative processor
+ * must not do. The processor only polls the futures, so it stays
+ * cooperative.
+ * <p>
+ * In the ordered mode the results come out in the order of the items; in
+ * the unordered mode a batch is emitted as soon as all its values arrive,
+ * so a slow key holds back only its own batch. Either way, all the
+ * batches are emitted before a watermark is forwarded or a snapshot is
+ * taken, so the processor has no state to save. If {@code mapFn}
+ * returns {@code null}, the item is dropped.
+ *
+ * @param <T> the type of the received item
+ * @param <K> the type of the map key
+ * @param <V> the type of the map value
+ * @param <R> the type of the emitted item
+ */
+public final class AsyncMapLookupP<T, K, V, R> extends AbstractProcessor {
+
+    private final String mapName;
+    private final DistributedFunction<? super T, ? extends K> keyFn;
+    private final DistributedBiFunction<? super T, ? super V, ? extends R> mapFn;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final boolean ordered;
+
+    private final ArrayDeque<Lookup> inFlight = new ArrayDeque<>();
+    private IMap<K, V> map;
+    private List<T> batch;
+    private Traverser<R> resultTraverser;
+
+    private AsyncMapLookupP(
+            String mapName,
+            DistributedFunction<? super T, ? extends K> keyFn,
+            DistributedBiFunction<? super T, ? super V, ? extends R> mapFn,
+            int batchSize,
+            int maxInFlight,
+            boolean ordered
+    ) {
+        this.mapName = mapName;
+        this.keyFn = keyFn;
+        this.mapFn = mapFn;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.ordered = ordered;
+        this.batch = new ArrayList<>(batchSize);
+    }
+
+    /**
+     * Returns the supplier of processors that look up the key of each
+     * item in the given {@code IMap} and emit {@code mapFn(item, value)}.
+     *
+     * @param batchSize the maximum number of items in a batch
+     * @param maxInFlight the maximum number of batches waiting for values
+     * @param ordered whether to emit the results in the order of the items
+     */
+    public static <T, K, V, R> DistributedSupplier<Processor> mapUsingIMapAsyncP(
+            String mapName,
+            DistributedFunction<? super T, ? extends K> keyFn,
+            DistributedBiFunction<? super T, ? super V, ? extends R> mapFn,
+            int batchSize,
+            int maxInFlight,
+            boolean ordered
+    ) {
+        if (batchSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("batchSize=" + batchSize + ", maxInFlight=" + maxInFlight);
+        }
+        return () -> new AsyncMapLookupP<>(mapName, keyFn, mapFn, batchSize, maxInFlight, ordered);
+    }
+
+    @Override
+    protected void init(@Nonnull Context context) {
+        map = context.jetInstance().getMap(mapName);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        emitCompleted();
+        if (batch.size() == batchSize && !send()) {
+            return false;
+        }
+        batch.add((T) item);
+        return true;
+    }
+
+    @Override
+    public boolean tryProcess() {
+        emitCompleted();
+        if (!batch.isEmpty() && inFlight.isEmpty()) {
+            send();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        return flush() && tryEmit(wm);
+    }
+
+    @Override
+    public boolean saveToSnapshot() {
+        return flush();
+    }
+
+    @Override
+    public boolean complete() {
+        return flush();
+    }
+
+    /**
+     * Sends the open batch and emits the results of all the batches.
+     * Returns {@code true} when there's nothing left to emit.
+     */
+    private boolean flush() {
+        emitCompleted();
+        if (!batch.isEmpty()) {
+            send();
+        }
+        return batch.isEmpty() && inFlight.isEmpty() && resultTraverser == null;
+    }
+
+    private boolean send() {
+        if (inFlight.size() == maxInFlight) {
+            return false;
+        }
+        inFlight.add(new Lookup(batch));
+        batch = new ArrayList<>(batchSize);
+        return true;
+    }
+
+    private void emitCompleted() {
+        while (true) {
+            if (resultTraverser != null) {
+                if (!emitFromTraverser(resultTraverser)) {
+                    return;
+                }
+                resultTraverser = null;
+            }
+            Lookup done = pollDone();
+            if (done == null) {
+                return;
+            }
+            resultTraverser = done.results();
+        }
+    }
+
+    private Lookup pollDone() {
+        if (ordered) {
+            return !inFlight.isEmpty() && inFlight.peek().isDone() ? inFlight.poll() : null;
+        }
+        for (Iterator<Lookup> it = inFlight.iterator(); it.hasNext(); ) {
+            Lookup lookup = it.next();
+            if (lookup.isDone()) {
+                it.remove();
+                return lookup;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The items of a batch and the futures of the values of their keys.
+     */
+    private final class Lookup {
+        private final List<T> items;
+        private final Map<K, ICompletableFuture<V>> futures = new HashMap<>();
+        private final List<ICompletableFuture<V>> pending;
+        private int nextPending;
+
+        Lookup(List<T> items) {
+            this.items = items;
+            for (T item : items) {
+                futures.computeIfAbsent(keyFn.apply(item), map::getAsync);
+            }
+            pending = new ArrayList<>(futures.values());
+        }
+
+        boolean isDone() {
+            while (nextPending < pending.size() && pending.get(nextPending).isDone()) {
+                nextPending++;
+            }
+            return nextPending == pending.size();
+        }
+
+        Traverser<R> results() {
+            List<R> results = new ArrayList<>(items.size());
+            for (T item : items) {
+                R result = mapFn.apply(item, value(futures.get(keyFn.apply(item))));
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return Traversers.traverseIterable(results);
+        }
+
+        private V value(ICompletableFuture<V> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JetException("Interrupted while reading a lookup result from " + mapName, e);
+            } catch (ExecutionException e) {
+                throw new JetException("Lookup in " + mapName + " failed", e.getCause());
+            }
+        }
+    }
+}
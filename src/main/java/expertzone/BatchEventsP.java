@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.function.DistributedToLongFunction;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Packs events into columnar {@link EventBatch}es for {@link
+ * AccumulateBatchesByFrameP}. It extracts each event's timestamp, key and
+ * value once and appends them to the batch of the key's bucket, {@code
+ * floorMod(hash(key), bucketCount)}. A batch is emitted when it's full
+ * and all the batches are emitted, full or not, before each watermark,
+ * before each snapshot and when the input completes. This way the
+ * watermark never overtakes the events it covers and the processor has
+ * no state to save.
+ * <p>
+ * Partition the outbound edge by {@link EventBatch#bucket()}. The buckets
+ * map to the partitions one-to-one as long as there are at most as many
+ * buckets as partitions (271 by default), so fewer buckets give bigger
+ * batches, but a less even spread over the downstream processors.
+ *
+ * @param <T> the type of the event
+ */
+public final class BatchEventsP<T> extends AbstractProcessor {
+
+    private final DistributedToLongFunction<? super T> timestampFn;
+    private final DistributedToLongFunction<? super T> keyFn;
+    private final DistributedToLongFunction<? super T> valueFn;
+    private final int batchSize;
+    private final EventBatch[] batches;
+    private final Traverser<EventBatch> flushTraverser = new FlushTraverser();
+    private EventBatch fullBatch;
+
+    private BatchEventsP(
+            DistributedToLongFunction<? super T> timestampFn,
+            DistributedToLongFunction<? super T> keyFn,
+            DistributedToLongFunction<? super T> valueFn,
+            int batchSize,
+            int bucketCount
+    ) {
+        this.timestampFn = timestampFn;
+        this.keyFn = keyFn;
+        this.valueFn = valueFn;
+        this.batchSize = batchSize;
+        this.batches = new EventBatch[bucketCount];
+    }
+
+    /**
+     * Returns the supplier of processors that batch the events into at most
+     * {@code bucketCount} batches of at most {@code batchSize} events.
+     */
+    public static <T> DistributedSupplier<BatchEventsP<T>> batchEventsP(
+            DistributedToLongFunction<? super T> timestampFn,
+            DistributedToLongFunction<? super T> keyFn,
+            DistributedToLongFunction<? super T> valueFn,
+            int batchSize,
+            int bucketCount
+    ) {
+        if (batchSize < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("batchSize=" + batchSize + ", bucketCount=" + bucketCount);
+        }
+        return () -> new BatchEventsP<>(timestampFn, keyFn, valueFn, batchSize, bucketCount);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        if (fullBatch != null) {
+            if (!tryEmit(fullBatch)) {
+                return false;
+            }
+            fullBatch = null;
+        }
+        T t = (T) item;
+        long key = keyFn.applyAsLong(t);
+        int bucket = Math.floorMod(Long.hashCode(key) * 0x9E3779B9, batches.length);
+        EventBatch batch = batches[bucket];
+        if (batch == null) {
+            batch = batches[bucket] = new EventBatch(bucket, batchSize);
+        }
+        batch.add(timestampFn.applyAsLong(t), key, valueFn.applyAsLong(t));
+        if (batch.isFull()) {
+            batches[bucket] = null;
+            if (!tryEmit(batch)) {
+                fullBatch = batch;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        return flush() && tryEmit(wm);
+    }
+
+    @Override
+    public boolean saveToSnapshot() {
+        return flush();
+    }
+
+    @Override
+    public boolean complete() {
+        return flush();
+    }
+
+    private boolean flush() {
+        if (fullBatch != null) {
+            if (!tryEmit(fullBatch)) {
+                return false;
+            }
+            fullBatch = null;
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    private final class FlushTraverser implements Traverser<EventBatch> {
+        private int bucket;
+
+        @Override
+        public EventBatch next() {
+            for (; bucket < batches.length; bucket++) {
+                EventBatch batch = batches[bucket];
+                if (batch != null) {
+                    batches[bucket++] = null;
+                    return batch;
+                }
+            }
+            bucket = 0;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import java.util.Arrays;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A hash map from objects to primitive {@code long} counts, built for
+ * counting: {@link #add(Object, long)} updates the count in place, so
+ * counting an occurrence of a key that's already in the map allocates
+ * nothing. It uses open addressing with linear probing over a parallel
+ * array of keys and array of counts, which avoids the entry object and
+ * the boxed {@code Long} that a {@code HashMap<K, Long>} keeps per key.
+ * <p>
+ * Keys can't be {@code null} and can't be removed; {@link #clear()}
+ * empties the map but keeps its capacity for reuse.
+ *
+ * @param <K> the key type
+ */
+public class CountingMap<K> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private Object[] keys;
+    private long[] counts;
+    private int size;
+
+    public CountingMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map that can hold {@code expectedSize} keys without
+     * growing.
+     */
+    public CountingMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, 2 * expectedSize - 1)) << 1;
+        keys = new Object[capacity];
+        counts = new long[capacity];
+    }
+
+    /**
+     * Adds {@code delta} to the count of the given key, putting it into the
+     * map with the count {@code delta} if it isn't there yet.
+     *
+     * @return the new count
+     */
+    public long add(K key, long delta) {
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        for (Object k; (k = keys[slot]) != null; slot = (slot + 1) & mask) {
+            if (k.equals(key)) {
+                return counts[slot] += delta;
+            }
+        }
+        keys[slot] = key;
+        counts[slot] = delta;
+        if (++size > keys.length >> 1) {
+            grow();
+        }
+        return delta;
+    }
+
+    /**
+     * Returns the count of the given key or 0 if it isn't in the map.
+     */
+    public long get(Object key) {
+        int mask = keys.length - 1;
+        int slot = spread(key.hashCode()) & mask;
+        for (Object k; (k = keys[slot]) != null; slot = (slot + 1) & mask) {
+            if (k.equals(key)) {
+                return counts[slot];
+            }
+        }
+        return 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes each key and its count to the given action, in no particular
+     * order.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(ObjLongConsumer<? super K> action) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                action.accept((K) keys[slot], counts[slot]);
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the slot array; {@link #keyAt} and {@link
+     * #countAt} accept indices below it.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Returns the key in the given slot or {@code null} if it's empty.
+     */
+    @SuppressWarnings("unchecked")
+    K keyAt(int slot) {
+        return (K) keys[slot];
+    }
+
+    long countAt(int slot) {
+        return counts[slot];
+    }
+
+    /**
+     * Adds all the counts from the given map to this one.
+     */
+    public void addAll(CountingMap<? extends K> other) {
+        other.forEach(this::add);
+    }
+
+    public void clear() {
+        Arrays.fill(keys, null);
+        size = 0;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        long[] oldCounts = counts;
+        keys = new Object[oldKeys.length << 1];
+        counts = new long[oldKeys.length << 1];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) {
+                continue;
+            }
+            int slot = spread(oldKeys[i].hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            counts[slot] = oldCounts[i];
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
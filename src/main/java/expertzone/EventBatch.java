@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A batch of events in columnar form: parallel arrays of the events'
+ * timestamps, {@code long} keys and {@code long} values. {@link
+ * BatchEventsP} builds the batches so that all the events in a batch
+ * have keys from the same {@linkplain #bucket() bucket}; a partitioned
+ * edge can route the batch by its bucket and still send all the events
+ * of a key to the same processor.
+ */
+public final class EventBatch implements DataSerializable {
+
+    private int bucket;
+    private int size;
+    private long[] timestamps;
+    private long[] keys;
+    private long[] values;
+
+    /**
+     * Used by deserialization.
+     */
+    public EventBatch() {
+    }
+
+    EventBatch(int bucket, int capacity) {
+        this.bucket = bucket;
+        this.timestamps = new long[capacity];
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+    }
+
+    /**
+     * Returns the bucket of the keys in this batch; use it as the
+     * partitioning key of the edge the batch travels over.
+     */
+    public int bucket() {
+        return bucket;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(int index) {
+        return timestamps[index];
+    }
+
+    public long key(int index) {
+        return keys[index];
+    }
+
+    public long value(int index) {
+        return values[index];
+    }
+
+    boolean isFull() {
+        return size == timestamps.length;
+    }
+
+    void add(long timestamp, long key, long value) {
+        timestamps[size] = timestamp;
+        keys[size] = key;
+        values[size++] = value;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(bucket);
+        out.writeLongArray(Arrays.copyOf(timestamps, size));
+        out.writeLongArray(Arrays.copyOf(keys, size));
+        out.writeLongArray(Arrays.copyOf(values, size));
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        bucket = in.readInt();
+        timestamps = in.readLongArray();
+        keys = in.readLongArray();
+        values = in.readLongArray();
+        size = timestamps.length;
+    }
+
+    @Override
+    public String toString() {
+        return "EventBatch{bucket=" + bucket + ", size=" + size + '}';
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import java.util.Arrays;
+
+/**
+ * The frames of one key's sliding window as a ring buffer of primitive
+ * {@code long} sums, indexed by the frame's sequence number: the frame
+ * timestamp divided by the frame size. A frame always lands in the same
+ * slot, so adding to a frame is an array write and sliding the window by
+ * one frame adds the sum of the frame that entered and subtracts the sum
+ * of the frame that left. No accumulator objects are created or dropped
+ * as the window slides.
+ * <p>
+ * The ring holds the frames of the current window and the frames that
+ * arrived ahead of it. It starts with room for at least twice the window and only
+ * grows if the frames ahead of the window don't fit, so its size stays
+ * bounded by the window length plus the watermark lag, in frames.
+ */
+public final class FrameRing {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int windowFrames;
+
+    private long[] seqs;
+    private long[] sums;
+    private int storedFrames;
+    private int framesInWindow;
+    private long windowSum;
+
+    /**
+     * Creates an empty ring for windows of the given number of frames.
+     */
+    public FrameRing(int windowFrames) {
+        this.windowFrames = windowFrames;
+        int capacity = Integer.highestOneBit(Math.max(windowFrames, 1)) << 2;
+        seqs = new long[capacity];
+        sums = new long[capacity];
+        Arrays.fill(seqs, EMPTY);
+    }
+
+    /**
+     * Adds the value to the frame with the given sequence. The frame must
+     * not be in the current window or behind it.
+     */
+    public void add(long frameSeq, long value) {
+        int slot = slot(frameSeq);
+        while (seqs[slot] != frameSeq && seqs[slot] != EMPTY) {
+            grow();
+            slot = slot(frameSeq);
+        }
+        if (seqs[slot] == EMPTY) {
+            seqs[slot] = frameSeq;
+            sums[slot] = 0;
+            storedFrames++;
+        }
+        sums[slot] += value;
+    }
+
+    /**
+     * Slides the window by one frame so that it ends with the frame of the
+     * given sequence.
+     */
+    public void slideTo(long winEndSeq) {
+        int slot = slot(winEndSeq);
+        if (seqs[slot] == winEndSeq) {
+            windowSum += sums[slot];
+            framesInWindow++;
+        }
+        long leavingSeq = winEndSeq - windowFrames;
+        slot = slot(leavingSeq);
+        if (seqs[slot] == leavingSeq) {
+            windowSum -= sums[slot];
+            framesInWindow--;
+            seqs[slot] = EMPTY;
+            storedFrames--;
+        }
+    }
+
+    /**
+     * Returns the sum of the frames in the current window.
+     */
+    public long windowSum() {
+        return windowSum;
+    }
+
+    /**
+     * Tells whether any frame with data is in the current window.
+     */
+    public boolean hasWindowData() {
+        return framesInWindow > 0;
+    }
+
+    /**
+     * Tells whether the ring holds no frames, in the window or ahead of it.
+     */
+    public boolean isEmpty() {
+        return storedFrames == 0;
+    }
+
+    /**
+     * Returns the lowest sequence of the stored frames, {@code
+     * Long.MAX_VALUE} if there are none.
+     */
+    public long minFrameSeq() {
+        long min = Long.MAX_VALUE;
+        for (long seq : seqs) {
+            if (seq != EMPTY) {
+                min = Math.min(min, seq);
+            }
+        }
+        return min;
+    }
+
+    private int slot(long frameSeq) {
+        return (int) frameSeq & (seqs.length - 1);
+    }
+
+    private void grow() {
+        long[] oldSeqs = seqs;
+        long[] oldSums = sums;
+        for (int capacity = oldSeqs.length << 1; ; capacity <<= 1) {
+            seqs = new long[capacity];
+            sums = new long[capacity];
+            Arrays.fill(seqs, EMPTY);
+            if (rehash(oldSeqs, oldSums)) {
+                return;
+            }
+        }
+    }
+
+    private boolean rehash(long[] oldSeqs, long[] oldSums) {
+        for (int i = 0; i < oldSeqs.length; i++) {
+            if (oldSeqs[i] == EMPTY) {
+                continue;
+            }
+            int slot = slot(oldSeqs[i]);
+            if (seqs[slot] != EMPTY) {
+                return false;
+            }
+            seqs[slot] = oldSeqs[i];
+            sums[slot] = oldSums[i];
+        }
+        return true;
+    }
+}
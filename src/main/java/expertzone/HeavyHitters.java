@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import com.hazelcast.jet.aggregate.AggregateOperation;
+import com.hazelcast.jet.aggregate.AggregateOperation1;
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.Util.entry;
+import static java.util.Comparator.comparingLong;
+
+/**
+ * An approximate summary of the most frequent items in a stream, usable
+ * as the accumulator of an aggregate operation: see {@link #topK}. Its
+ * size depends only on the configured error, not on the number of
+ * distinct items, so it keeps bounded memory under a long tail of rare
+ * items where exact counting would need a counter for each of them.
+ * <p>
+ * It combines two structures:
+ * <ul>
+ *     <li>a <em>Space-Saving</em> summary with {@code ceil(1 / epsilon)}
+ *     counters tracks the candidate heavy hitters. When a new item
+ *     arrives and all the counters are taken, it replaces the item with
+ *     the lowest count and inherits its count plus one. Every item that
+ *     occurs more than {@code epsilon * N} times among {@code N} items is
+ *     guaranteed to be tracked, and no count is overestimated by more
+ *     than {@code epsilon * N};
+ *     <li>a <em>Count-Min sketch</em> of width {@code ceil(e / epsilon)}
+ *     and depth {@code ceil(ln(1 / delta))} counts all the items. Its
+ *     estimate also exceeds the true count by at most {@code epsilon * N},
+ *     with probability {@code 1 - delta}, but independently of the
+ *     Space-Saving error, so the reported count is the lower of the two
+ *     estimates.
+ * </ul>
+ * Both structures are mergeable, so the summary supports the combining
+ * step of two-stage and sliding-window aggregation. It doesn't support
+ * deduction.
+ * <p>
+ * The sketch picks an item's column in each row from two hashes: the
+ * item's {@code hashCode()} and a second one computed independently of
+ * it for strings and {@code Long}s, so items whose {@code hashCode()}s
+ * collide still share few columns. Other types have only their {@code
+ * hashCode()} to offer, so for them the rows are only as independent as
+ * the {@code hashCode()}s are.
+ * <p>
+ * The summary takes about {@code 8 * e / epsilon * ln(1 / delta)} bytes
+ * for the sketch plus {@code 1 / epsilon} counters. A sliding window
+ * keeps one for each frame, so choose {@code epsilon} no smaller than
+ * the precision of the top {@code k} requires.
+ *
+ * @param <T> the type of the counted items
+ */
+public final class HeavyHitters<T> implements DataSerializable {
+
+    private int sketchWidth;
+    private long[] sketch;
+    private int depth;
+
+    // Space-Saving counters as a min-heap on the count
+    private Object[] items;
+    private long[] counts;
+    private int size;
+
+    // Open-addressed index from the tracked items to their heap positions:
+    // indexSlots holds the position plus one, 0 in empty slots, and
+    // slotOfPos the slot of each position.
+    private int[] indexSlots;
+    private int[] slotOfPos;
+
+    /**
+     * @param epsilon the maximum overestimation of an item's count, as a
+     *                fraction of the total number of items
+     * @param delta the probability that the Count-Min estimate exceeds the
+     *              error bound
+     */
+    public HeavyHitters(double epsilon, double delta) {
+        if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+            throw new IllegalArgumentException(
+                    "epsilon and delta must be in (0, 1), but are " + epsilon + " and " + delta);
+        }
+        sketchWidth = (int) Math.ceil(Math.E / epsilon);
+        depth = (int) Math.ceil(Math.log(1 / delta));
+        sketch = new long[depth * sketchWidth];
+        initCounters((int) Math.ceil(1 / epsilon));
+    }
+
+    /**
+     * Used by Hazelcast serialization.
+     */
+    public HeavyHitters() {
+    }
+
+    private void initCounters(int capacity) {
+        items = new Object[capacity];
+        counts = new long[capacity];
+        indexSlots = new int[Integer.highestOneBit(capacity) << 2];
+        slotOfPos = new int[capacity];
+    }
+
+    /**
+     * Returns an aggregate operation that finds the {@code k} most
+     * frequent items, with their approximate counts, most frequent first.
+     * See the {@linkplain HeavyHitters class documentation} for the
+     * meaning of {@code epsilon} and {@code delta}. Items that occur less
+     * than {@code epsilon * N} times may be missing from the result, so
+     * choose {@code epsilon} well below the expected share of the k-th
+     * most frequent item.
+     */
+    public static <T> AggregateOperation1<T, HeavyHitters<T>, List<Entry<T, Long>>> topK(
+            int k, double epsilon, double delta
+    ) {
+        return AggregateOperation
+                .withCreate(() -> new HeavyHitters<T>(epsilon, delta))
+                .<T>andAccumulate(HeavyHitters::add)
+                .andCombine(HeavyHitters::addAll)
+                .andExportFinish(acc -> acc.topK(k));
+    }
+
+    public void add(T item) {
+        addToSketch(item, 1);
+        int index = indexOf(item);
+        if (index >= 0) {
+            counts[index]++;
+            siftDown(index);
+        } else if (size < items.length) {
+            items[size] = item;
+            counts[size] = 1;
+            addToIndex(size);
+            siftUp(size++);
+        } else {
+            removeFromIndex(0);
+            items[0] = item;
+            counts[0]++;
+            addToIndex(0);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Merges the other summary, which must have been created with the same
+     * parameters, into this one.
+     */
+    public void addAll(HeavyHitters<T> other) {
+        if (other.sketch.length != sketch.length || other.items.length != items.length) {
+            throw new IllegalArgumentException("Can't merge summaries with different error bounds");
+        }
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] += other.sketch[i];
+        }
+        // An item missing from a full summary may have occurred up to its
+        // minimum count of times, so the merged count adds that minimum.
+        long thisMin = size == items.length ? counts[0] : 0;
+        long otherMin = other.size == other.items.length ? other.counts[0] : 0;
+        Map<Object, Long> merged = new HashMap<>(2 * (size + other.size));
+        for (int i = 0; i < size; i++) {
+            merged.put(items[i], counts[i] + otherMin);
+        }
+        for (int i = 0; i < other.size; i++) {
+            long otherCount = other.counts[i];
+            merged.merge(other.items[i], otherCount + thisMin, (a, b) -> a - otherMin + otherCount);
+        }
+        List<Entry<Object, Long>> best = new ArrayList<>(merged.entrySet());
+        best.sort(comparingLong((Entry<Object, Long> e) -> e.getValue()).reversed());
+        Arrays.fill(indexSlots, 0);
+        size = 0;
+        for (Entry<Object, Long> e : best.subList(0, Math.min(items.length, best.size()))) {
+            items[size] = e.getKey();
+            counts[size] = e.getValue();
+            addToIndex(size);
+            siftUp(size++);
+        }
+    }
+
+    /**
+     * Returns the estimated count of the given item: the lower of the
+     * Space-Saving count (if the item is tracked) and the Count-Min
+     * estimate.
+     */
+    public long estimate(T item) {
+        long estimate = Long.MAX_VALUE;
+        int hash1 = hash(item);
+        int hash2 = secondHash(item);
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, sketch[row * sketchWidth + column(hash1, hash2, row)]);
+        }
+        int index = indexOf(item);
+        return index >= 0 ? Math.min(estimate, counts[index]) : estimate;
+    }
+
+    /**
+     * Returns the {@code k} tracked items with the highest estimated
+     * counts, highest first.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Entry<T, Long>> topK(int k) {
+        List<Entry<T, Long>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            T item = (T) items[i];
+            result.add(entry(item, estimate(item)));
+        }
+        result.sort(comparingLong((Entry<T, Long> e) -> e.getValue()).reversed());
+        return result.size() > k ? new ArrayList<>(result.subList(0, k)) : result;
+    }
+
+    private void addToSketch(Object item, long count) {
+        int hash1 = hash(item);
+        int hash2 = secondHash(item);
+        for (int row = 0; row < depth; row++) {
+            sketch[row * sketchWidth + column(hash1, hash2, row)] += count;
+        }
+    }
+
+    private int column(int hash1, int hash2, int row) {
+        return Math.floorMod(hash1 + row * hash2, sketchWidth);
+    }
+
+    private static int hash(Object item) {
+        int h = item.hashCode() * 0x9E3779B9;
+        return h ^ h >>> 16;
+    }
+
+    private static int secondHash(Object item) {
+        if (item instanceof CharSequence) {
+            // FNV-1a over the characters
+            CharSequence chars = (CharSequence) item;
+            int h = 0x811C9DC5;
+            for (int i = 0; i < chars.length(); i++) {
+                h = (h ^ chars.charAt(i)) * 0x01000193;
+            }
+            return h | 1;
+        }
+        long bits = item instanceof Long ? (Long) item : item.hashCode();
+        bits *= 0xC2B2AE3D27D4EB4FL;
+        return (int) (bits ^ bits >>> 29) | 1;
+    }
+
+    private int indexOf(Object item) {
+        int mask = indexSlots.length - 1;
+        for (int slot = hash(item) & mask; indexSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int pos = indexSlots[slot] - 1;
+            if (items[pos].equals(item)) {
+                return pos;
+            }
+        }
+        return -1;
+    }
+
+    private void addToIndex(int pos) {
+        int mask = indexSlots.length - 1;
+        int slot = hash(items[pos]) & mask;
+        while (indexSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        indexSlots[slot] = pos + 1;
+        slotOfPos[pos] = slot;
+    }
+
+    private void removeFromIndex(int pos) {
+        int mask = indexSlots.length - 1;
+        int hole = slotOfPos[pos];
+        indexSlots[hole] = 0;
+        // move back the entries that can no longer be reached across the hole
+        for (int slot = (hole + 1) & mask; indexSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int movedPos = indexSlots[slot] - 1;
+            int home = hash(items[movedPos]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                indexSlots[hole] = movedPos + 1;
+                slotOfPos[movedPos] = hole;
+                indexSlots[slot] = 0;
+                hole = slot;
+            }
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (counts[parent] <= counts[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        for (int child; (child = 2 * i + 1) < size; i = child) {
+            if (child + 1 < size && counts[child + 1] < counts[child]) {
+                child++;
+            }
+            if (counts[i] <= counts[child]) {
+                return;
+            }
+            swap(i, child);
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        long count = counts[i];
+        counts[i] = counts[j];
+        counts[j] = count;
+        int slotI = slotOfPos[i];
+        int slotJ = slotOfPos[j];
+        indexSlots[slotI] = j + 1;
+        indexSlots[slotJ] = i + 1;
+        slotOfPos[i] = slotJ;
+        slotOfPos[j] = slotI;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(sketchWidth);
+        out.writeLongArray(sketch);
+        out.writeInt(items.length);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeObject(items[i]);
+            out.writeLong(counts[i]);
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        sketchWidth = in.readInt();
+        sketch = in.readLongArray();
+        depth = sketch.length / sketchWidth;
+        initCounters(in.readInt());
+        size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            items[i] = in.readObject();
+            counts[i] = in.readLong();
+            addToIndex(i);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "HeavyHitters{counters=" + size + '/' + items.length + ", top=" + topK(10) + '}';
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Spreads the items of hot keys over several partitions of a partitioned
+ * edge. Use it in the processor upstream of the edge to wrap each item
+ * into a {@link Salted} and partition the edge by the {@code Salted}
+ * item itself with {@code Partitioner.HASH_CODE}.
+ * <p>
+ * The salter counts the keys it sees in periods of {@code sampleSize}
+ * items. A key that took at least {@code hotShare} of the items in the
+ * last period is hot in the next one: its items get the salts {@code 1}
+ * to {@code fanOut} in round-robin fashion, so they go to up to {@code
+ * fanOut} different partitions. All the other items get the salt {@code
+ * 0} and go to the same partition as the plain key would.
+ * <p>
+ * The downstream stage must group by the original key ({@link
+ * Salted#key()}), not by the salted item, and its results must go through
+ * a combining stage partitioned by the original key, which merges the
+ * partial results of a hot key. In a two-stage aggregation that's already
+ * the case.
+ * <p>
+ * A salter is not thread-safe; create one per processor.
+ *
+ * @param <K> the type of the partitioning key
+ */
+public final class HotKeySalter<K> {
+
+    private final int fanOut;
+    private final long hotCount;
+    private final int sampleSize;
+    private final CountingMap<K> sample;
+
+    // the next salt to use for each hot key
+    private Map<K, int[]> hotKeys = new HashMap<>();
+    private int sampled;
+
+    /**
+     * @param fanOut the number of partitions to spread a hot key over,
+     *               typically the local parallelism of the downstream vertex
+     * @param hotShare the minimum share of the items a key must take to be hot
+     * @param sampleSize the number of items in a detection period
+     */
+    public HotKeySalter(int fanOut, double hotShare, int sampleSize) {
+        if (fanOut < 1 || !(hotShare > 0 && hotShare <= 1) || sampleSize < 1) {
+            throw new IllegalArgumentException("fanOut=" + fanOut + ", hotShare=" + hotShare
+                    + ", sampleSize=" + sampleSize);
+        }
+        this.fanOut = fanOut;
+        this.hotCount = Math.max(1, (long) Math.ceil(hotShare * sampleSize));
+        this.sampleSize = sampleSize;
+        this.sample = new CountingMap<>();
+    }
+
+    /**
+     * Wraps the item with the given key into a {@code Salted}.
+     */
+    public <T> Salted<T> salt(T item, K key) {
+        sample.add(key, 1);
+        if (++sampled == sampleSize) {
+            startNewPeriod();
+        }
+        int[] nextSalt = hotKeys.get(key);
+        if (nextSalt == null) {
+            return new Salted<>(item, key, 0);
+        }
+        int salt = nextSalt[0];
+        nextSalt[0] = salt == fanOut ? 1 : salt + 1;
+        return new Salted<>(item, key, salt);
+    }
+
+    /**
+     * Returns whether the given key is currently hot.
+     */
+    public boolean isHot(K key) {
+        return hotKeys.containsKey(key);
+    }
+
+    private void startNewPeriod() {
+        Map<K, int[]> newHotKeys = new HashMap<>();
+        sample.forEach((key, count) -> {
+            if (count >= hotCount) {
+                int[] nextSalt = hotKeys.get(key);
+                newHotKeys.put(key, nextSalt != null ? nextSalt : new int[] {1});
+            }
+        });
+        hotKeys = newHotKeys;
+        sample.clear();
+        sampled = 0;
+    }
+
+    /**
+     * An item together with its partitioning key and salt. Its {@code
+     * hashCode()} is that of the key for salt 0 and a mix of the key's and
+     * the salt for the others, so partitioning by the {@code Salted} item
+     * with {@code Partitioner.HASH_CODE} sends unsalted items where their
+     * key would go.
+     *
+     * @param <T> the type of the item
+     */
+    public static final class Salted<T> implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final T item;
+        private final Object key;
+        private final int salt;
+
+        Salted(T item, Object key, int salt) {
+            this.item = item;
+            this.key = key;
+            this.salt = salt;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        @SuppressWarnings("unchecked")
+        public <K> K key() {
+            return (K) key;
+        }
+
+        public int salt() {
+            return salt;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            final Salted<?> that;
+            return obj instanceof Salted
+                    && this.salt == (that = (Salted<?>) obj).salt
+                    && this.key.equals(that.key)
+                    && Objects.equals(this.item, that.item);
+        }
+
+        @Override
+        public int hashCode() {
+            return salt == 0 ? key.hashCode() : key.hashCode() ^ (salt * 0x9E3779B9);
+        }
+
+        @Override
+        public String toString() {
+            return "Salted{key=" + key + ", salt=" + salt + ", item=" + item + '}';
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.pipeline.ContextFactory;
+
+import java.util.Map.Entry;
+
+/**
+ * A read-only copy of an {@code IMap} with {@code int} keys in an
+ * open-addressed table of primitive {@code int} keys. It is the enriching
+ * side of a hash-join on an {@code int} foreign key, such as {@code
+ * Trade.productId()}. The pipeline's {@code hashJoin()} keeps the
+ * enriching items in a {@code HashMap}, so each lookup boxes the key and
+ * follows the pointers from the table to the {@code Integer} key and the
+ * map entry. This table keeps the keys in an {@code int[]} and the values
+ * in a parallel array; a lookup hashes the {@code int} and probes the
+ * array, with no allocation.
+ * <p>
+ * Like the hash-join, the table is a snapshot of the map taken when the
+ * job starts. Create it with the context factory from {@link
+ * #intLookupTable} and look the items up in a {@code mapUsingContext()}
+ * stage; the factory has {@code shareLocally()}, so there's one table per
+ * member.
+ *
+ * @param <V> the type of the map value
+ */
+public final class IntLookupTable<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    /**
+     * Creates an empty table with room for the given number of entries.
+     */
+    public IntLookupTable(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 4) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    /**
+     * Returns the factory of the lookup table of the given {@code IMap},
+     * loaded once per member and shared by all the processors of the stage.
+     */
+    public static <V> ContextFactory<IntLookupTable<V>> intLookupTable(String mapName) {
+        return ContextFactory
+                .withCreateFn(jet -> IntLookupTable.<V>copyOf(jet.getMap(mapName)))
+                .shareLocally();
+    }
+
+    /**
+     * Returns a new table with the entries of the given map.
+     */
+    public static <V> IntLookupTable<V> copyOf(IMap<Integer, V> map) {
+        IntLookupTable<V> table = new IntLookupTable<>(map.size());
+        for (Entry<Integer, V> e : map.entrySet()) {
+            table.put(e.getKey(), e.getValue());
+        }
+        return table;
+    }
+
+    /**
+     * Returns the value of the key, {@code null} if the table doesn't have
+     * the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Associates the value with the key, replacing the previous value.
+     */
+    public void put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("null value for key " + key);
+        }
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length >> 1) {
+            grow();
+        }
+    }
+
+    /**
+     * Returns the number of entries in the table.
+     */
+    public int size() {
+        return size;
+    }
+
+    private static int slot(int key, int mask) {
+        return (key * 0x9E3779B9 >>> 16 ^ key * 0x9E3779B9) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length << 1];
+        values = new Object[oldKeys.length << 1];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.datamodel.TimestampedItem;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.function.DistributedToLongFunction;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Separates the late events from the on-time ones in front of a windowing
+ * vertex. The windowing processors silently drop an event whose frame the
+ * watermark has already passed; this processor applies the same rule
+ * with the watermarks it forwards and sends such events to a side output
+ * instead:
+ * <ul>
+ *     <li>ordinal 0 gets the on-time events, connect it to the windowing
+ *     vertex;
+ *     <li>ordinal 1 gets the late events, for example to store them and
+ *     re-aggregate them later in a batch job;
+ *     <li>ordinal 2 is optional. If it's connected, it gets a {@code
+ *     TimestampedItem<Long>} for every frame that lost events since the
+ *     previous watermark: the timestamp is the frame's end and the item
+ *     is the number of its events that came late. Every window that
+ *     covers the frame missed these events; for a tumbling window the
+ *     frame is the window.
+ * </ul>
+ * The watermarks go to all the outputs. Since the downstream vertex
+ * receives the watermarks of all the instances of this vertex and
+ * coalesces them, an event this processor lets through can't be late
+ * downstream.
+ *
+ * @param <T> the type of the event
+ */
+public final class LateEventsP<T> extends AbstractProcessor {
+
+    private final DistributedToLongFunction<? super T> timestampFn;
+    private final SlidingWindowPolicy winPolicy;
+    private final CountingMap<Long> lateCounts = new CountingMap<>();
+    private final Traverser<TimestampedItem<Long>> lateCountTraverser = new LateCountTraverser();
+    private boolean countOutputConnected;
+    private long currentWm = Long.MIN_VALUE;
+
+    private LateEventsP(DistributedToLongFunction<? super T> timestampFn, SlidingWindowPolicy winPolicy) {
+        this.timestampFn = timestampFn;
+        this.winPolicy = winPolicy;
+    }
+
+    /**
+     * Returns the supplier of processors that split the events into on-time
+     * and late ones for a windowing vertex that uses the given window
+     * policy and timestamp function.
+     */
+    public static <T> DistributedSupplier<LateEventsP<T>> lateEventsP(
+            DistributedToLongFunction<? super T> timestampFn,
+            SlidingWindowPolicy winPolicy
+    ) {
+        return () -> new LateEventsP<>(timestampFn, winPolicy);
+    }
+
+    @Override
+    protected void init(@Nonnull Context context) {
+        countOutputConnected = getOutbox().bucketCount() > 2;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        long frameTs = winPolicy.higherFrameTs(timestampFn.applyAsLong((T) item));
+        if (frameTs > currentWm) {
+            return tryEmit(0, item);
+        }
+        if (!tryEmit(1, item)) {
+            return false;
+        }
+        if (countOutputConnected) {
+            lateCounts.add(frameTs, 1);
+        }
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        if (countOutputConnected && !emitFromTraverser(2, lateCountTraverser)) {
+            return false;
+        }
+        if (!tryEmit(wm)) {
+            return false;
+        }
+        currentWm = wm.timestamp();
+        return true;
+    }
+
+    private final class LateCountTraverser implements Traverser<TimestampedItem<Long>> {
+        private int slot;
+
+        @Override
+        public TimestampedItem<Long> next() {
+            for (; slot < lateCounts.capacity(); slot++) {
+                Long frameTs = lateCounts.keyAt(slot);
+                if (frameTs != null) {
+                    return new TimestampedItem<>(frameTs, lateCounts.countAt(slot++));
+                }
+            }
+            lateCounts.clear();
+            slot = 0;
+            return null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.MapEvent;
+import com.hazelcast.jet.pipeline.ContextFactory;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.map.listener.MapClearedListener;
+import com.hazelcast.map.listener.MapEvictedListener;
+
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A member-local copy of an {@code IMap} that follows the changes to the
+ * map while the job runs. It is the enriching side of a hash-join that
+ * doesn't go stale: the pipeline's {@code hashJoin()} reads the enriching
+ * map once, when the job starts, and gives each processor its own copy of
+ * the hashtable; a {@code mapUsingContext()} stage with the context
+ * factory from {@link #refreshingLookupTable} looks the items up in a
+ * single table per member, kept up to date by a map listener.
+ * <p>
+ * The table registers the listener before it reads the map, so it misses
+ * no update made after it was created. An update or a removal that
+ * arrives while the map is being read wins over the value read from the
+ * map. If the map is cleared or all its entries are evicted while it's
+ * being read, the table drops what it has read so far and stops reading:
+ * the entries put into the map after that arrive through the listener.
+ * Evicted and expired entries are removed from the table, too. A lookup
+ * is a
+ * {@code ConcurrentHashMap.get()}, so it doesn't block and the stage can
+ * stay cooperative. Updates reach the table asynchronously, shortly after
+ * they're made to the map, and each member applies them in the same order
+ * per key.
+ *
+ * @param <K> the type of the map key
+ * @param <V> the type of the map value
+ */
+public final class RefreshingLookupTable<K, V> {
+
+    private static final Object REMOVED = new Object();
+
+    private final IMap<K, V> map;
+    // while the map is being read, a removed key maps to REMOVED
+    private final ConcurrentMap<K, Object> table = new ConcurrentHashMap<>();
+    private final String listenerId;
+    private volatile boolean loading = true;
+    // guarded by "this"
+    private boolean clearedWhileLoading;
+
+    private RefreshingLookupTable(IMap<K, V> map) {
+        this.map = map;
+        this.listenerId = map.addEntryListener(new Listener(), true);
+        for (Entry<K, V> e : map.entrySet()) {
+            synchronized (this) {
+                if (clearedWhileLoading) {
+                    break;
+                }
+                table.putIfAbsent(e.getKey(), e.getValue());
+            }
+        }
+        loading = false;
+        table.values().removeIf(v -> v == REMOVED);
+    }
+
+    /**
+     * Returns the factory of the lookup table of the given {@code IMap},
+     * one table per member, shared by all the processors of the stage.
+     */
+    public static <K, V> ContextFactory<RefreshingLookupTable<K, V>> refreshingLookupTable(String mapName) {
+        return ContextFactory
+                .withCreateFn(jet -> new RefreshingLookupTable<K, V>(jet.getMap(mapName)))
+                .withDestroyFn(RefreshingLookupTable::close)
+                .shareLocally();
+    }
+
+    /**
+     * Returns the current value of the key, {@code null} if the map has no
+     * such key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(K key) {
+        Object value = table.get(key);
+        return value != REMOVED ? (V) value : null;
+    }
+
+    private void remove(K key) {
+        if (loading) {
+            table.put(key, REMOVED);
+        } else {
+            table.remove(key);
+        }
+    }
+
+    private synchronized void clear() {
+        if (loading) {
+            clearedWhileLoading = true;
+        }
+        table.clear();
+    }
+
+    private void close() {
+        map.removeEntryListener(listenerId);
+    }
+
+    private final class Listener implements EntryAddedListener<K, V>, EntryUpdatedListener<K, V>,
+            EntryRemovedListener<K, V>, EntryEvictedListener<K, V>, EntryExpiredListener<K, V>,
+            MapClearedListener, MapEvictedListener {
+
+        @Override
+        public void entryAdded(EntryEvent<K, V> event) {
+            table.put(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<K, V> event) {
+            table.put(event.getKey(), event.getValue());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<K, V> event) {
+            remove(event.getKey());
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<K, V> event) {
+            remove(event.getKey());
+        }
+
+        @Override
+        public void entryExpired(EntryEvent<K, V> event) {
+            remove(event.getKey());
+        }
+
+        @Override
+        public void mapCleared(MapEvent event) {
+            clear();
+        }
+
+        @Override
+        public void mapEvicted(MapEvent event) {
+            clear();
+        }
+    }
+}
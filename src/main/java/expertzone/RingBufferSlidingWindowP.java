@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.accumulator.LongAccumulator;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.datamodel.TimestampedEntry;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.function.KeyedWindowResultFunction;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * A replacement for the second stage of a two-stage sliding window
+ * aggregation, {@code combineToSlidingWindowP()}, with the {@code
+ * counting()} or {@code summingLong()} aggregate operation. The
+ * general-purpose processor keeps a map from key to accumulator for
+ * every frame, creates the maps as the frames arrive and drops them as
+ * they slide out of the window. This one keeps a single map from key to
+ * a {@link FrameRing}: the key's frame sums in a ring buffer of {@code
+ * long}s, indexed by the frame's sequence number. Sliding the window is
+ * one addition and one subtraction per key and the state doesn't change
+ * shape as time goes on; its size is bounded by the number of keys times
+ * the number of frames in the ring.
+ * <p>
+ * It receives the {@code TimestampedEntry<K, LongAccumulator>} frames
+ * that {@code accumulateByFrameP()} or {@link AccumulateBatchesByFrameP}
+ * emits and emits the window results when the watermark passes the
+ * window's end, like {@code combineToSlidingWindowP()} does. Frames that
+ * arrive after the watermark passed them are dropped. When the input
+ * completes, it emits the remaining windows. The processor doesn't save
+ * its state to the snapshot, so use it only in jobs without a processing
+ * guarantee.
+ *
+ * @param <K> the type of the grouping key
+ * @param <OUT> the type of the emitted item
+ */
+public final class RingBufferSlidingWindowP<K, OUT> extends AbstractProcessor {
+
+    private final SlidingWindowPolicy winPolicy;
+    private final long frameSize;
+    private final int windowFrames;
+    private final KeyedWindowResultFunction<? super K, ? super Long, OUT> mapToOutputFn;
+
+    private final Map<K, FrameRing> rings = new HashMap<>();
+    private final ResultTraverser resultTraverser = new ResultTraverser();
+    // the frame timestamps are frameOffset + seq * frameSize
+    private long frameOffset;
+    // the sequence of the frame the current window ends with
+    private long winEndSeq = Long.MIN_VALUE;
+    private Traverser<Object> flushTraverser;
+
+    private RingBufferSlidingWindowP(
+            SlidingWindowPolicy winPolicy,
+            KeyedWindowResultFunction<? super K, ? super Long, OUT> mapToOutputFn
+    ) {
+        this.winPolicy = winPolicy;
+        this.frameSize = winPolicy.frameSize();
+        this.windowFrames = (int) (winPolicy.windowSize() / frameSize);
+        this.mapToOutputFn = mapToOutputFn;
+    }
+
+    /**
+     * Returns the supplier of processors that combine the frames emitted by
+     * {@code accumulateByFrameP(..., winPolicy, counting())} or {@code
+     * summingLong()} into sliding windows. The counterpart of {@code
+     * combineToSlidingWindowP(winPolicy, counting(), mapToOutputFn)}.
+     */
+    public static <K, OUT> DistributedSupplier<RingBufferSlidingWindowP<K, OUT>> combineSumsToSlidingWindowP(
+            SlidingWindowPolicy winPolicy,
+            KeyedWindowResultFunction<? super K, ? super Long, OUT> mapToOutputFn
+    ) {
+        return () -> new RingBufferSlidingWindowP<>(winPolicy, mapToOutputFn);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        TimestampedEntry<K, LongAccumulator> frame = (TimestampedEntry<K, LongAccumulator>) item;
+        long frameTs = frame.getTimestamp();
+        long frameSeq = Math.floorDiv(frameTs, frameSize);
+        if (frameSeq <= winEndSeq) {
+            return true;
+        }
+        frameOffset = Math.floorMod(frameTs, frameSize);
+        rings.computeIfAbsent(frame.getKey(), k -> new FrameRing(windowFrames))
+             .add(frameSeq, frame.getValue().get());
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        if (flushTraverser == null) {
+            flushTraverser = resultTraverser.upTo(seqAtOrBefore(wm.timestamp())).append(wm);
+        }
+        if (!emitFromTraverser(flushTraverser)) {
+            return false;
+        }
+        flushTraverser = null;
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        if (flushTraverser == null) {
+            flushTraverser = resultTraverser.upTo(Long.MAX_VALUE);
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    private long seqAtOrBefore(long ts) {
+        return Math.floorDiv(winPolicy.floorFrameTs(ts), frameSize);
+    }
+
+    private long frameTs(long seq) {
+        return seq * frameSize + frameOffset;
+    }
+
+    /**
+     * Emits the results of all the windows ending at or before the limit,
+     * one window end at a time. When no key has data in the current
+     * window, it skips ahead to the window of the oldest stored frame.
+     */
+    private final class ResultTraverser implements Traverser<Object> {
+        private long limitSeq;
+        private Iterator<Entry<K, FrameRing>> ringIterator;
+        // whether any key had data in the current window
+        private boolean windowData;
+
+        ResultTraverser upTo(long limitSeq) {
+            this.limitSeq = limitSeq;
+            return this;
+        }
+
+        @Override
+        public Object next() {
+            while (true) {
+                if (ringIterator != null) {
+                    while (ringIterator.hasNext()) {
+                        Entry<K, FrameRing> e = ringIterator.next();
+                        FrameRing ring = e.getValue();
+                        ring.slideTo(winEndSeq);
+                        if (ring.isEmpty()) {
+                            ringIterator.remove();
+                        }
+                        if (ring.hasWindowData()) {
+                            windowData = true;
+                            long winEnd = frameTs(winEndSeq);
+                            return mapToOutputFn.apply(winEnd - winPolicy.windowSize(), winEnd,
+                                    e.getKey(), ring.windowSum());
+                        }
+                    }
+                    ringIterator = null;
+                }
+                if (rings.isEmpty() || winEndSeq >= limitSeq) {
+                    return null;
+                }
+                long nextSeq = winEndSeq + 1;
+                if (!windowData) {
+                    nextSeq = Math.max(nextSeq, Math.min(limitSeq, minFrameSeq()));
+                }
+                winEndSeq = nextSeq;
+                windowData = false;
+                ringIterator = rings.entrySet().iterator();
+            }
+        }
+
+        private long minFrameSeq() {
+            long min = Long.MAX_VALUE;
+            for (FrameRing ring : rings.values()) {
+                min = Math.min(min, ring.minFrameSeq());
+            }
+            return min;
+        }
+    }
+}
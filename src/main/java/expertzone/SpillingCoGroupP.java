@@ -0,0 +1,375 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.JetException;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.datamodel.ItemsByTag;
+import com.hazelcast.jet.datamodel.Tag;
+import com.hazelcast.jet.function.DistributedComparator;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+import static com.hazelcast.jet.Util.entry;
+
+/**
+ * Co-groups its inputs by key into lists, like the Pipeline API's
+ * co-group with {@code toList()} on every input, but without holding
+ * everything on the heap. The pipeline keeps a list accumulator per key
+ * until the input completes, so a batch larger than the members' memory
+ * fails with an {@code OutOfMemoryError}. This processor keeps at most
+ * {@code maxBufferedItems} items in memory. When the buffer fills up, it
+ * sorts the buffered items by key and writes them to a file on the local
+ * disk as a sorted run. When the input completes, it merges the runs,
+ * reading one item from each at a time, and emits the groups one by one.
+ * It merges at most 64 runs at once, so that the
+ * number of open files and their read buffers stay bounded: if there are
+ * more runs, it first merges them in groups into longer runs, as many
+ * passes as needed.
+ * <p>
+ * Inbound edge {@code i} is co-grouped by {@code keyFns.get(i)}, and it
+ * should be partitioned by the same key and distributed. For each key
+ * the processor emits an {@code Entry<K, ItemsByTag>} with the list of
+ * the items from edge {@code i} under {@code Tag.tag(i)}, the items in
+ * the order they were received; this is the output of the co-group
+ * builder. An input without items for the key gets an empty list.
+ * <p>
+ * The runs are written with Java serialization, so the keys and the
+ * items must be {@code Serializable}. The processor writes to disk, so it
+ * is non-cooperative. Only the buffer is bounded: the items of a single
+ * key are still collected into lists in memory, so a key with more items
+ * than fit on the heap still fails.
+ *
+ * @param <K> the type of the grouping key
+ */
+public final class SpillingCoGroupP<K> extends AbstractProcessor {
+
+    // write the back-references table out of the stream every so many records
+    private static final int RESET_INTERVAL = 1024;
+    private static final int MAX_MERGE_FAN_IN = 64;
+
+    private final List<DistributedFunction<Object, ? extends K>> keyFns;
+    private final DistributedComparator<? super K> keyComparator;
+    private final Comparator<Record<K>> recordComparator;
+    private final int maxBufferedItems;
+
+    private final List<Record<K>> buffer = new ArrayList<>();
+    private List<Path> runs = new ArrayList<>();
+    private int runCount;
+    private Path spillDir;
+    private MergingIterator merger;
+    private GroupTraverser groupTraverser;
+
+    @SuppressWarnings("unchecked")
+    private SpillingCoGroupP(
+            List<DistributedFunction<?, ? extends K>> keyFns,
+            DistributedComparator<? super K> keyComparator,
+            int maxBufferedItems
+    ) {
+        this.keyFns = (List) keyFns;
+        this.keyComparator = keyComparator;
+        this.recordComparator = (r1, r2) -> keyComparator.compare(r1.key, r2.key);
+        this.maxBufferedItems = maxBufferedItems;
+    }
+
+    /**
+     * Returns the supplier of processors that co-group the items of their
+     * inbound edges by key into lists, keeping at most {@code
+     * maxBufferedItems} items in memory.
+     *
+     * @param keyFns the key extractor of each inbound edge, by ordinal
+     * @param keyComparator the order of the keys in the sorted runs
+     * @param maxBufferedItems the number of items that triggers a spill
+     */
+    public static <K> DistributedSupplier<SpillingCoGroupP<K>> coGroupToListsP(
+            List<DistributedFunction<?, ? extends K>> keyFns,
+            DistributedComparator<? super K> keyComparator,
+            int maxBufferedItems
+    ) {
+        if (maxBufferedItems < 1) {
+            throw new IllegalArgumentException("maxBufferedItems=" + maxBufferedItems);
+        }
+        return () -> new SpillingCoGroupP<>(keyFns, keyComparator, maxBufferedItems);
+    }
+
+    @Override
+    public boolean isCooperative() {
+        return false;
+    }
+
+    @Override
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        buffer.add(new Record<>(keyFns.get(ordinal).apply(item), ordinal, item));
+        if (buffer.size() >= maxBufferedItems) {
+            spill();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        if (groupTraverser == null) {
+            if (runs.isEmpty()) {
+                buffer.sort(recordComparator);
+                groupTraverser = new GroupTraverser(buffer.iterator());
+            } else {
+                if (!buffer.isEmpty()) {
+                    spill();
+                }
+                while (runs.size() > MAX_MERGE_FAN_IN) {
+                    mergePass();
+                }
+                merger = new MergingIterator(runs);
+                groupTraverser = new GroupTraverser(merger);
+            }
+        }
+        return emitFromTraverser(groupTraverser);
+    }
+
+    @Override
+    public void close(@Nullable Throwable error) throws Exception {
+        if (merger != null) {
+            merger.close();
+        }
+        if (spillDir != null) {
+            // also removes the output of a merge pass that failed midway
+            try (Stream<Path> files = Files.list(spillDir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(spillDir);
+        }
+    }
+
+    /**
+     * Writes the buffer, sorted by key, to a new run file and clears it.
+     */
+    private void spill() {
+        buffer.sort(recordComparator);
+        runs.add(writeRun(buffer.iterator()));
+        buffer.clear();
+    }
+
+    /**
+     * Merges each group of up to {@code MAX_MERGE_FAN_IN} consecutive runs
+     * into a single run. The merged run takes the place of its group, so
+     * the runs stay in the order the items were received.
+     */
+    private void mergePass() {
+        List<Path> merged = new ArrayList<>();
+        for (int from = 0; from < runs.size(); from += MAX_MERGE_FAN_IN) {
+            List<Path> group = runs.subList(from, Math.min(from + MAX_MERGE_FAN_IN, runs.size()));
+            if (group.size() == 1) {
+                merged.add(group.get(0));
+                continue;
+            }
+            MergingIterator groupMerger = new MergingIterator(group);
+            try {
+                merged.add(writeRun(groupMerger));
+            } finally {
+                groupMerger.close();
+            }
+            for (Path run : group) {
+                try {
+                    Files.delete(run);
+                } catch (IOException e) {
+                    throw new JetException("Failed to delete the merged run " + run, e);
+                }
+            }
+        }
+        runs = merged;
+    }
+
+    private Path writeRun(Iterator<Record<K>> records) {
+        Path run = null;
+        try {
+            if (spillDir == null) {
+                spillDir = Files.createTempDirectory("jet-cogroup-");
+            }
+            run = spillDir.resolve("run-" + runCount++);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(run)))) {
+                for (int count = 1; records.hasNext(); count++) {
+                    Record<K> record = records.next();
+                    out.writeBoolean(true);
+                    out.writeObject(record.key);
+                    out.writeInt(record.ordinal);
+                    out.writeObject(record.item);
+                    if (count % RESET_INTERVAL == 0) {
+                        out.reset();
+                    }
+                }
+                out.writeBoolean(false);
+            }
+        } catch (IOException e) {
+            throw new JetException("Failed to write the sorted run " + run, e);
+        }
+        return run;
+    }
+
+    private static final class Record<K> {
+        final K key;
+        final int ordinal;
+        final Object item;
+
+        Record(K key, int ordinal, Object item) {
+            this.key = key;
+            this.ordinal = ordinal;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Turns a sequence of records sorted by key into one {@code Entry<K,
+     * ItemsByTag>} per key.
+     */
+    private final class GroupTraverser implements Traverser<Entry<K, ItemsByTag>> {
+        private final Iterator<Record<K>> records;
+        private Record<K> next;
+
+        GroupTraverser(Iterator<Record<K>> records) {
+            this.records = records;
+            this.next = records.hasNext() ? records.next() : null;
+        }
+
+        @Override
+        public Entry<K, ItemsByTag> next() {
+            if (next == null) {
+                return null;
+            }
+            K key = next.key;
+            List<List<Object>> lists = new ArrayList<>(keyFns.size());
+            for (int i = 0; i < keyFns.size(); i++) {
+                lists.add(new ArrayList<>());
+            }
+            do {
+                lists.get(next.ordinal).add(next.item);
+                next = records.hasNext() ? records.next() : null;
+            } while (next != null && keyComparator.compare(next.key, key) == 0);
+            ItemsByTag itemsByTag = new ItemsByTag();
+            for (int i = 0; i < lists.size(); i++) {
+                itemsByTag.put(Tag.tag(i), lists.get(i));
+            }
+            return entry(key, itemsByTag);
+        }
+    }
+
+    /**
+     * Merges sorted runs into a single sequence sorted by key. Records with
+     * equal keys come in the order of the runs, so the items of a key stay
+     * in the order they were received.
+     */
+    private final class MergingIterator implements Iterator<Record<K>> {
+        private final PriorityQueue<RunReader> heads;
+
+        MergingIterator(List<Path> runs) {
+            heads = new PriorityQueue<>(runs.size(), (r1, r2) -> {
+                int cmp = recordComparator.compare(r1.head, r2.head);
+                return cmp != 0 ? cmp : Integer.compare(r1.index, r2.index);
+            });
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(i, runs.get(i));
+                if (reader.head != null) {
+                    heads.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public Record<K> next() {
+            RunReader reader = heads.poll();
+            Record<K> record = reader.head;
+            reader.advance();
+            if (reader.head != null) {
+                heads.add(reader);
+            } else {
+                reader.close();
+            }
+            return record;
+        }
+
+        void close() {
+            for (RunReader reader : heads) {
+                reader.close();
+            }
+            heads.clear();
+        }
+    }
+
+    private final class RunReader {
+        final int index;
+        private final Path path;
+        private final ObjectInputStream in;
+        Record<K> head;
+
+        RunReader(int index, Path path) {
+            this.index = index;
+            this.path = path;
+            try {
+                in = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)));
+            } catch (IOException e) {
+                throw new JetException("Failed to open the spilled run " + path, e);
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        void advance() {
+            try {
+                head = in.readBoolean()
+                        ? new Record<>((K) in.readObject(), in.readInt(), in.readObject())
+                        : null;
+            } catch (IOException | ClassNotFoundException e) {
+                throw new JetException("Failed to read the spilled run " + path, e);
+            }
+        }
+
+        void close() {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
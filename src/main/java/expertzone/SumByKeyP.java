@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.function.DistributedToLongFunction;
+
+import javax.annotation.Nonnull;
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.Util.entry;
+import static com.hazelcast.jet.function.DistributedFunctions.entryKey;
+
+/**
+ * A specialized replacement for {@code accumulateByKeyP()} and {@code
+ * combineByKeyP()} with the {@code counting()} and {@code summingLong()}
+ * aggregate operations. The general-purpose processors keep a {@code
+ * HashMap} from the key to a {@code LongAccumulator}, which costs a map
+ * node and an accumulator object per distinct key. This one keeps the
+ * keys and their {@code long} sums in the open-addressed arrays of a
+ * {@link CountingMap}, so updating the sum of a known key allocates
+ * nothing and the whole state is two arrays.
+ * <p>
+ * It emits {@code Entry<K, Long>} items after it has received all the
+ * input. Since it emits plain sums, the same processor serves both
+ * stages of a two-stage aggregation: {@link #countByKeyP} in the first
+ * stage and {@link #combineSumsByKeyP} in the second.
+ *
+ * @param <T> the type of the input item
+ * @param <K> the type of the grouping key
+ */
+public final class SumByKeyP<T, K> extends AbstractProcessor {
+
+    private final DistributedFunction<? super T, ? extends K> keyFn;
+    private final DistributedToLongFunction<? super T> valueFn;
+    private final CountingMap<K> sums = new CountingMap<>();
+    private final Traverser<Entry<K, Long>> resultTraverser = new ResultTraverser();
+
+    private SumByKeyP(
+            DistributedFunction<? super T, ? extends K> keyFn,
+            DistributedToLongFunction<? super T> valueFn
+    ) {
+        this.keyFn = keyFn;
+        this.valueFn = valueFn;
+    }
+
+    /**
+     * Returns the supplier of processors that count the items by the key
+     * extracted with {@code keyFn}. The counterpart of {@code
+     * accumulateByKeyP(singletonList(keyFn), counting())}.
+     */
+    public static <T, K> DistributedSupplier<SumByKeyP<T, K>> countByKeyP(
+            DistributedFunction<? super T, ? extends K> keyFn
+    ) {
+        return () -> new SumByKeyP<T, K>(keyFn, item -> 1L);
+    }
+
+    /**
+     * Returns the supplier of processors that sum the value extracted with
+     * {@code valueFn} by the key extracted with {@code keyFn}. The
+     * counterpart of {@code accumulateByKeyP(singletonList(keyFn),
+     * summingLong(valueFn))}.
+     */
+    public static <T, K> DistributedSupplier<SumByKeyP<T, K>> sumByKeyP(
+            DistributedFunction<? super T, ? extends K> keyFn,
+            DistributedToLongFunction<? super T> valueFn
+    ) {
+        return () -> new SumByKeyP<T, K>(keyFn, valueFn);
+    }
+
+    /**
+     * Returns the supplier of processors that combine the {@code Entry<K,
+     * Long>} partial sums emitted by upstream {@code SumByKeyP}
+     * processors. The counterpart of {@code combineByKeyP(counting(),
+     * Util::entry)}.
+     */
+    public static <K> DistributedSupplier<SumByKeyP<Entry<K, Long>, K>> combineSumsByKeyP() {
+        return () -> new SumByKeyP<Entry<K, Long>, K>(entryKey(), Entry::getValue);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        T t = (T) item;
+        sums.add(keyFn.apply(t), valueFn.applyAsLong(t));
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        return emitFromTraverser(resultTraverser);
+    }
+
+    private final class ResultTraverser implements Traverser<Entry<K, Long>> {
+        private int slot;
+
+        @Override
+        public Entry<K, Long> next() {
+            for (; slot < sums.capacity(); slot++) {
+                K key = sums.keyAt(slot);
+                if (key != null) {
+                    return entry(key, sums.countAt(slot++));
+                }
+            }
+            return null;
+        }
+    }
+}
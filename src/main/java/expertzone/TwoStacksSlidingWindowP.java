@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.Traversers;
+import com.hazelcast.jet.aggregate.AggregateOperation;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.SlidingWindowPolicy;
+import com.hazelcast.jet.core.Watermark;
+import com.hazelcast.jet.datamodel.TimestampedEntry;
+import com.hazelcast.jet.function.DistributedBiConsumer;
+import com.hazelcast.jet.function.DistributedFunction;
+import com.hazelcast.jet.function.DistributedSupplier;
+import com.hazelcast.jet.function.KeyedWindowResultFunction;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A replacement for the second stage of a two-stage sliding window
+ * aggregation, {@code combineToSlidingWindowP()}, for aggregate
+ * operations without a {@code deductFn}. When the window slides, the
+ * general-purpose processor deducts the frame that left the window if it
+ * can; otherwise it combines all the frames of the window again, which is
+ * 100 combines per key and slide for a 1-second window sliding by 10
+ * milliseconds. This processor keeps each key's window in a {@link
+ * TwoStacksWindow}, so sliding costs amortized O(1) combines regardless
+ * of how many frames the window has.
+ * <p>
+ * It receives the {@code TimestampedEntry<K, A>} frames that {@code
+ * accumulateByFrameP()} emits and emits the window results when the
+ * watermark passes the window's end, like {@code combineToSlidingWindowP()}
+ * does. Frames that arrive after the watermark passed them are dropped.
+ * When the input completes, it emits the remaining windows. The
+ * processor doesn't save its state to the snapshot, so use it only in
+ * jobs without a processing guarantee.
+ * <p>
+ * With {@link #combineWithEarlyResultsP} it also emits early results at
+ * a fixed processing-time interval: the partial results of the window
+ * that contains the newest frame received, for every key that has data
+ * in that window. The final result of each window comes when the
+ * watermark passes its end. The emitted {@link WindowResult}s tell the
+ * early results from the final ones. The window can slide by more than a
+ * frame: a one-minute tumbling window built from one-second frames gets
+ * a new early result every second, as soon as the watermark passes each
+ * second. Early results therefore still lag behind the events by the
+ * watermark lag.
+ *
+ * @param <K> the type of the grouping key
+ * @param <A> the type of the accumulator
+ * @param <R> the type of the aggregation result
+ * @param <OUT> the type of the emitted item
+ */
+public final class TwoStacksSlidingWindowP<K, A, R, OUT> extends AbstractProcessor {
+
+    private final long frameSize;
+    private final long windowSize;
+    private final long slideBy;
+    private final SlidingWindowPolicy winPolicy;
+    private final DistributedSupplier<A> createFn;
+    private final DistributedBiConsumer<? super A, ? super A> combineFn;
+    private final DistributedFunction<? super A, ? extends R> exportFn;
+    private final AggregateOperation<A, R> aggrOp;
+    private final KeyedWindowResultFunction<? super K, ? super R, OUT> mapToOutputFn;
+    private final KeyedWindowResultFunction<? super K, ? super R, OUT> earlyMapToOutputFn;
+    private final long earlyResultsPeriodNanos;
+
+    // frames the watermark hasn't passed yet: frame timestamp -> key -> accumulator
+    private final Map<Long, Map<K, A>> pendingFrames = new HashMap<>();
+    private final Map<K, TwoStacksWindow<A>> windows = new HashMap<>();
+    private final ResultTraverser resultTraverser = new ResultTraverser();
+    private long nextFrameTs = Long.MIN_VALUE;
+    private long newestFrameTs = Long.MIN_VALUE;
+    private Traverser<Object> flushTraverser;
+    private Traverser<OUT> earlyResultTraverser;
+    private long nextEarlyResultsNanos;
+
+    private TwoStacksSlidingWindowP(
+            SlidingWindowPolicy winPolicy,
+            long slideBy,
+            AggregateOperation<A, R> aggrOp,
+            KeyedWindowResultFunction<? super K, ? super R, OUT> mapToOutputFn,
+            KeyedWindowResultFunction<? super K, ? super R, OUT> earlyMapToOutputFn,
+            long earlyResultsPeriodMillis
+    ) {
+        this.winPolicy = winPolicy;
+        this.frameSize = winPolicy.frameSize();
+        this.windowSize = winPolicy.windowSize();
+        this.slideBy = slideBy;
+        this.aggrOp = aggrOp;
+        this.createFn = aggrOp.createFn();
+        this.combineFn = aggrOp.combineFn();
+        this.exportFn = aggrOp.exportFn();
+        this.mapToOutputFn = mapToOutputFn;
+        this.earlyMapToOutputFn = earlyMapToOutputFn;
+        this.earlyResultsPeriodNanos = MILLISECONDS.toNanos(earlyResultsPeriodMillis);
+    }
+
+    /**
+     * Returns the supplier of processors that combine the frames emitted by
+     * {@code accumulateByFrameP(..., winPolicy, aggrOp)} into sliding
+     * windows. The counterpart of {@code combineToSlidingWindowP(winPolicy,
+     * aggrOp, mapToOutputFn)}.
+     */
+    public static <K, A, R, OUT> DistributedSupplier<TwoStacksSlidingWindowP<K, A, R, OUT>>
+    combineToSlidingWindowP(
+            SlidingWindowPolicy winPolicy,
+            AggregateOperation<A, R> aggrOp,
+            KeyedWindowResultFunction<? super K, ? super R, OUT> mapToOutputFn
+    ) {
+        return () -> new TwoStacksSlidingWindowP<>(winPolicy, winPolicy.frameSize(), aggrOp,
+                mapToOutputFn, null, 0);
+    }
+
+    /**
+     * Returns the supplier of processors that work like the ones from
+     * {@link #combineToSlidingWindowP} and additionally emit early results
+     * every {@code earlyResultsPeriodMillis} milliseconds of processing
+     * time. The frames are those of {@code winPolicy}, but the window
+     * slides by {@code slideBy}, a multiple of the frame size; for a
+     * tumbling window, {@code slideBy} is the window size.
+     */
+    public static <K, A, R> DistributedSupplier<TwoStacksSlidingWindowP<K, A, R, WindowResult<K, R>>>
+    combineWithEarlyResultsP(
+            SlidingWindowPolicy winPolicy,
+            long slideBy,
+            AggregateOperation<A, R> aggrOp,
+            long earlyResultsPeriodMillis
+    ) {
+        if (earlyResultsPeriodMillis <= 0) {
+            throw new IllegalArgumentException("earlyResultsPeriodMillis=" + earlyResultsPeriodMillis);
+        }
+        if (slideBy <= 0 || slideBy % winPolicy.frameSize() != 0) {
+            throw new IllegalArgumentException("slideBy=" + slideBy + " is not a multiple of the frame size "
+                    + winPolicy.frameSize());
+        }
+        return () -> new TwoStacksSlidingWindowP<K, A, R, WindowResult<K, R>>(winPolicy, slideBy, aggrOp,
+                (start, end, key, result) -> new WindowResult<>(start, end, key, result, false),
+                (start, end, key, result) -> new WindowResult<>(start, end, key, result, true),
+                earlyResultsPeriodMillis);
+    }
+
+    @Override
+    protected void init(@Nonnull Context context) {
+        nextEarlyResultsNanos = System.nanoTime() + earlyResultsPeriodNanos;
+    }
+
+    @Override
+    public boolean tryProcess() {
+        if (earlyMapToOutputFn == null) {
+            return true;
+        }
+        if (earlyResultTraverser == null) {
+            long now = System.nanoTime();
+            if (now - nextEarlyResultsNanos < 0) {
+                return true;
+            }
+            nextEarlyResultsNanos = now + earlyResultsPeriodNanos;
+            earlyResultTraverser = earlyResults();
+        }
+        if (!emitFromTraverser(earlyResultTraverser)) {
+            return false;
+        }
+        earlyResultTraverser = null;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess(int ordinal, @Nonnull Object item) {
+        TimestampedEntry<K, A> frame = (TimestampedEntry<K, A>) item;
+        long frameTs = frame.getTimestamp();
+        if (frameTs < nextFrameTs) {
+            return true;
+        }
+        newestFrameTs = Math.max(newestFrameTs, frameTs);
+        A acc = pendingFrames.computeIfAbsent(frameTs, x -> new HashMap<>())
+                             .computeIfAbsent(frame.getKey(), x -> createFn.get());
+        combineFn.accept(acc, frame.getValue());
+        return true;
+    }
+
+    @Override
+    public boolean tryProcessWatermark(@Nonnull Watermark wm) {
+        if (flushTraverser == null) {
+            flushTraverser = resultTraverser.upTo(wm.timestamp()).append(wm);
+        }
+        if (!emitFromTraverser(flushTraverser)) {
+            return false;
+        }
+        flushTraverser = null;
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        if (flushTraverser == null) {
+            flushTraverser = resultTraverser.upTo(Long.MAX_VALUE);
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    /**
+     * Computes the early results of the window that contains the newest
+     * frame received: the frames already in the key's {@code
+     * TwoStacksWindow} followed by the pending frames that fall into the
+     * window. Returns nothing once the window's final results are out.
+     */
+    private Traverser<OUT> earlyResults() {
+        if (newestFrameTs == Long.MIN_VALUE) {
+            return Traversers.empty();
+        }
+        long winEnd = Math.floorDiv(newestFrameTs + slideBy - 1, slideBy) * slideBy;
+        if (winEnd < nextFrameTs) {
+            return Traversers.empty();
+        }
+        long winStart = winEnd - windowSize;
+        Map<K, A> accs = new HashMap<>();
+        for (Entry<K, TwoStacksWindow<A>> e : windows.entrySet()) {
+            A closedFrames = e.getValue().aggregateAfter(winStart);
+            if (closedFrames != null) {
+                A acc = createFn.get();
+                combineFn.accept(acc, closedFrames);
+                accs.put(e.getKey(), acc);
+            }
+        }
+        long firstFrameTs = Math.max(nextFrameTs, winStart + frameSize);
+        for (long frameTs = firstFrameTs; frameTs <= winEnd; frameTs += frameSize) {
+            Map<K, A> frame = pendingFrames.get(frameTs);
+            if (frame == null) {
+                continue;
+            }
+            for (Entry<K, A> e : frame.entrySet()) {
+                combineFn.accept(accs.computeIfAbsent(e.getKey(), k -> createFn.get()), e.getValue());
+            }
+        }
+        List<OUT> results = new ArrayList<>(accs.size());
+        for (Entry<K, A> e : accs.entrySet()) {
+            results.add(earlyMapToOutputFn.apply(winStart, winEnd, e.getKey(), exportFn.apply(e.getValue())));
+        }
+        return Traversers.traverseIterable(results);
+    }
+
+    /**
+     * Moves the frame with the given timestamp from the pending frames to
+     * the windows and evicts the frames that slid out of the window ending
+     * with it.
+     */
+    private void slideTo(long frameTs) {
+        Map<K, A> frame = pendingFrames.remove(frameTs);
+        if (frame != null) {
+            for (Entry<K, A> e : frame.entrySet()) {
+                windows.computeIfAbsent(e.getKey(), k -> new TwoStacksWindow<>(aggrOp))
+                       .push(frameTs, e.getValue());
+            }
+        }
+        long evictTs = frameTs - windowSize;
+        for (Iterator<TwoStacksWindow<A>> it = windows.values().iterator(); it.hasNext(); ) {
+            TwoStacksWindow<A> window = it.next();
+            window.evictUpTo(evictTs);
+            if (window.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Emits the results of all the windows ending at or before the limit,
+     * one window end at a time, skipping the stretches of time when all
+     * the windows are empty.
+     */
+    private final class ResultTraverser implements Traverser<Object> {
+        private long limit;
+        private long winEnd;
+        private Iterator<Entry<K, TwoStacksWindow<A>>> windowIterator;
+
+        ResultTraverser upTo(long limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        @Override
+        public Object next() {
+            while (true) {
+                if (windowIterator != null) {
+                    if (Math.floorMod(winEnd, slideBy) == 0 && windowIterator.hasNext()) {
+                        Entry<K, TwoStacksWindow<A>> e = windowIterator.next();
+                        R result = exportFn.apply(e.getValue().aggregate());
+                        return mapToOutputFn.apply(winEnd - windowSize, winEnd, e.getKey(), result);
+                    }
+                    windowIterator = null;
+                    nextFrameTs = winEnd + frameSize;
+                }
+                if (windows.isEmpty()) {
+                    long minFrameTs = minPendingFrameTs();
+                    if (pendingFrames.isEmpty() || minFrameTs > limit) {
+                        if (limit != Long.MAX_VALUE) {
+                            nextFrameTs = Math.max(nextFrameTs, winPolicy.higherFrameTs(limit));
+                        }
+                        return null;
+                    }
+                    nextFrameTs = Math.max(nextFrameTs, minFrameTs);
+                }
+                if (nextFrameTs > limit) {
+                    return null;
+                }
+                winEnd = nextFrameTs;
+                slideTo(winEnd);
+                windowIterator = windows.entrySet().iterator();
+            }
+        }
+
+        private long minPendingFrameTs() {
+            long min = Long.MAX_VALUE;
+            for (long frameTs : pendingFrames.keySet()) {
+                min = Math.min(min, frameTs);
+            }
+            return min;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package expertzone;
+
+import com.hazelcast.jet.aggregate.AggregateOperation;
+import com.hazelcast.jet.function.DistributedBiConsumer;
+import com.hazelcast.jet.function.DistributedSupplier;
+
+import java.util.Arrays;
+
+/**
+ * The contents of one key's sliding window as a FIFO queue of frame
+ * accumulators that can give the combined accumulator of the whole
+ * queue without combining all the frames. It works with any aggregate
+ * operation, including those without a {@code deductFn} such as {@code
+ * maxBy()}.
+ * <p>
+ * It is the "two stacks" queue: frames are pushed onto the back stack,
+ * which keeps a running aggregate of its contents, and popped from the
+ * front stack, where each element holds the aggregate of itself and all
+ * the newer elements on that stack. When the front stack runs empty, the
+ * back stack is flipped over to it, computing the aggregates on the way.
+ * Every frame takes part in a constant number of combining operations,
+ * so pushing, evicting and querying all cost amortized O(1) combines,
+ * compared to the window size that recombining the whole window costs.
+ * <p>
+ * The order of combining is always oldest to newest, so the aggregate
+ * operation doesn't have to be commutative. The window never mutates the
+ * accumulators it's given.
+ *
+ * @param <A> the type of the accumulator
+ */
+public final class TwoStacksWindow<A> {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private final DistributedSupplier<A> createFn;
+    private final DistributedBiConsumer<? super A, ? super A> combineFn;
+
+    // back stack: the newest frames in push order and their running aggregate
+    private long[] backTs = new long[INITIAL_CAPACITY];
+    private Object[] backAccs = new Object[INITIAL_CAPACITY];
+    private int backSize;
+    private A backAgg;
+
+    // front stack: the oldest frame is on top (at frontSize - 1), each
+    // element holds the aggregate of itself and the elements below it
+    private long[] frontTs = new long[INITIAL_CAPACITY];
+    private Object[] frontAggs = new Object[INITIAL_CAPACITY];
+    private int frontSize;
+
+    public TwoStacksWindow(AggregateOperation<A, ?> aggrOp) {
+        this.createFn = aggrOp.createFn();
+        this.combineFn = aggrOp.combineFn();
+    }
+
+    public boolean isEmpty() {
+        return backSize == 0 && frontSize == 0;
+    }
+
+    /**
+     * Appends the accumulator of the frame with the given timestamp. The
+     * timestamp must be greater than that of any frame already in the
+     * window.
+     */
+    public void push(long frameTs, A acc) {
+        if (backSize == backTs.length) {
+            backTs = Arrays.copyOf(backTs, 2 * backSize);
+            backAccs = Arrays.copyOf(backAccs, 2 * backSize);
+        }
+        backTs[backSize] = frameTs;
+        backAccs[backSize++] = acc;
+        if (backAgg == null) {
+            backAgg = createFn.get();
+        }
+        combineFn.accept(backAgg, acc);
+    }
+
+    /**
+     * Removes the frames with a timestamp less than or equal to {@code
+     * frameTs}.
+     */
+    public void evictUpTo(long frameTs) {
+        while (!isEmpty()) {
+            if (frontSize == 0) {
+                flip();
+            }
+            if (frontTs[frontSize - 1] > frameTs) {
+                return;
+            }
+            frontAggs[--frontSize] = null;
+        }
+    }
+
+    /**
+     * Returns the combined accumulator of all the frames in the window,
+     * oldest first. The caller must not mutate it and must not use it
+     * after the next change of the window. Returns {@code null} if the
+     * window is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public A aggregate() {
+        if (frontSize == 0) {
+            return backAgg;
+        }
+        A frontAgg = (A) frontAggs[frontSize - 1];
+        if (backSize == 0) {
+            return frontAgg;
+        }
+        A result = createFn.get();
+        combineFn.accept(result, frontAgg);
+        combineFn.accept(result, backAgg);
+        return result;
+    }
+
+    /**
+     * Returns the combined accumulator of the frames with a timestamp
+     * greater than {@code frameTs}, oldest first, without changing the
+     * window. The cost is proportional to the number of frames it skips
+     * on the front stack, plus the number of frames on the back stack if
+     * it skips the whole front stack. The caller must not mutate the
+     * returned accumulator. Returns {@code null} if there are no such
+     * frames.
+     */
+    @SuppressWarnings("unchecked")
+    public A aggregateAfter(long frameTs) {
+        for (int i = frontSize - 1; i >= 0; i--) {
+            if (frontTs[i] > frameTs) {
+                if (backSize == 0) {
+                    return (A) frontAggs[i];
+                }
+                A result = createFn.get();
+                combineFn.accept(result, (A) frontAggs[i]);
+                combineFn.accept(result, backAgg);
+                return result;
+            }
+        }
+        A result = null;
+        for (int i = 0; i < backSize; i++) {
+            if (backTs[i] > frameTs) {
+                if (result == null) {
+                    result = createFn.get();
+                }
+                combineFn.accept(result, (A) backAccs[i]);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void flip() {
+        if (frontTs.length < backSize) {
+            frontTs = new long[backTs.length];
+            frontAggs = new Object[backTs.length];
+        }
+        A newer = null;
+        for (int i = backSize - 1; i >= 0; i--) {
+            A agg = createFn.get();
+            combineFn.accept(agg, (A) backAccs[i]);
+            if (newer != null) {
+                combineFn.accept(agg, newer);
+            }
+            frontTs[frontSize] = backTs[i];
+            frontAggs[frontSize++] = agg;
+            backAccs[i] = null;
+            newer = agg;
+        }
+        backSize = 0;
+        backAgg = null;
+    }
+}
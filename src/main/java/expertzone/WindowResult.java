@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * The result of a keyed window aggregation that can be either early or
+ * final. An early result covers the events received before the window
+ * closed and can be followed by more early results and then exactly one
+ * final result for the same window and key. The final result replaces
+ * all the early ones.
+ *
+ * @param <K> the type of the grouping key
+ * @param <R> the type of the aggregation result
+ */
+public final class WindowResult<K, R> implements Serializable {
+
+    private final long start;
+    private final long end;
+    private final K key;
+    private final R result;
+    private final boolean early;
+
+    public WindowResult(long start, long end, K key, R result, boolean early) {
+        this.start = start;
+        this.end = end;
+        this.key = key;
+        this.result = result;
+        this.early = early;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public K key() {
+        return key;
+    }
+
+    public R result() {
+        return result;
+    }
+
+    /**
+     * Tells whether this is an early result. If it's {@code false}, this is
+     * the final result of the window.
+     */
+    public boolean isEarly() {
+        return early;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        final WindowResult<?, ?> that;
+        return obj instanceof WindowResult
+                && this.start == (that = (WindowResult<?, ?>) obj).start
+                && this.end == that.end
+                && this.early == that.early
+                && Objects.equals(this.key, that.key)
+                && Objects.equals(this.result, that.result);
+    }
+
+    @Override
+    public int hashCode() {
+        int hc = 17;
+        hc = 73 * hc + Long.hashCode(start);
+        hc = 73 * hc + Long.hashCode(end);
+        hc = 73 * hc + Objects.hashCode(key);
+        hc = 73 * hc + Objects.hashCode(result);
+        hc = 73 * hc + Boolean.hashCode(early);
+        return hc;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowResult{start=" + start + ", end=" + end + ", key=" + key
+                + ", result=" + result + (early ? ", early" : ", final") + '}';
+    }
+}
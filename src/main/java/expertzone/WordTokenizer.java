@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package expertzone;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.pipeline.ContextFactory;
+
+import java.util.Arrays;
+
+/**
+ * A reusable traverser over the lowercase words of a piece of text. It
+ * produces the same words as {@code
+ * Pattern.compile("\\W+").split(text.toLowerCase())} with the empty
+ * strings filtered out, but scans the text just once and doesn't create
+ * the lowercase copy, the matcher or the array.
+ * <p>
+ * The characters of each word are lowercased into a reused buffer and
+ * looked up in a dictionary of the words seen so far, so a word that
+ * occurred before costs no allocation. Once the dictionary holds {@code
+ * maxDictionarySize} words, new words are returned as fresh strings
+ * without being added to it, which keeps the memory bounded when the
+ * text has a long tail of rare words.
+ * <p>
+ * The tokenizer is not thread-safe; use one instance per processor, for
+ * example through {@link #contextFactory()}. It is meant for use in a
+ * {@code flatMap}, which fully drains the returned traverser before
+ * passing the next item:
+ * <pre>{@code
+ * stage.flatMapUsingContext(WordTokenizer.contextFactory(),
+ *         (tokenizer, line) -> tokenizer.tokenize(line))
+ * }</pre>
+ */
+public final class WordTokenizer implements Traverser<String> {
+
+    public static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 20;
+
+    private final int maxDictionarySize;
+    private String[] dictionary = new String[1 << 10];
+    private int dictionarySize;
+
+    private char[] chars = new char[32];
+    private CharSequence text;
+    private int pos;
+
+    public WordTokenizer() {
+        this(DEFAULT_MAX_DICTIONARY_SIZE);
+    }
+
+    public WordTokenizer(int maxDictionarySize) {
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * Returns a context factory that gives each processor its own
+     * tokenizer.
+     */
+    public static ContextFactory<WordTokenizer> contextFactory() {
+        return ContextFactory.withCreateFn(jet -> new WordTokenizer());
+    }
+
+    /**
+     * Resets this tokenizer to traverse the words of the given text and
+     * returns it.
+     */
+    public WordTokenizer tokenize(CharSequence text) {
+        this.text = text;
+        this.pos = 0;
+        return this;
+    }
+
+    @Override
+    public String next() {
+        if (text == null) {
+            return null;
+        }
+        int length = text.length();
+        while (pos < length && !isWordChar(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == length) {
+            text = null;
+            return null;
+        }
+        int len = 0;
+        int hash = 0;
+        for (char c; pos < length && isWordChar(c = text.charAt(pos)); pos++) {
+            if (c <= 'Z' && c >= 'A') {
+                c |= 0x20;
+            }
+            if (len == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * len);
+            }
+            chars[len++] = c;
+            hash = 31 * hash + c;
+        }
+        return intern(len, hash);
+    }
+
+    public int dictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Returns the dictionary's string equal to {@code chars[0..len)},
+     * adding it if there's room. {@code hash} is the {@code String.hashCode()}
+     * of the word.
+     */
+    private String intern(int len, int hash) {
+        int mask = dictionary.length - 1;
+        int slot = spread(hash) & mask;
+        for (String word; (word = dictionary[slot]) != null; slot = (slot + 1) & mask) {
+            if (word.hashCode() == hash && equalsChars(word, len)) {
+                return word;
+            }
+        }
+        String word = new String(chars, 0, len);
+        if (dictionarySize < maxDictionarySize) {
+            dictionary[slot] = word;
+            if (++dictionarySize > dictionary.length >> 1) {
+                growDictionary();
+            }
+        }
+        return word;
+    }
+
+    private boolean equalsChars(String word, int len) {
+        if (word.length() != len) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (word.charAt(i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void growDictionary() {
+        String[] oldDictionary = dictionary;
+        dictionary = new String[oldDictionary.length << 1];
+        int mask = dictionary.length - 1;
+        for (String word : oldDictionary) {
+            if (word == null) {
+                continue;
+            }
+            int slot = spread(word.hashCode()) & mask;
+            while (dictionary[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            dictionary[slot] = word;
+        }
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isWordChar(char c) {
+        return c >= 'a' && c <= 'z'
+                || c >= 'A' && c <= 'Z'
+                || c >= '0' && c <= '9'
+                || c == '_';
+    }
+}
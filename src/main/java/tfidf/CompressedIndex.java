@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.AbstractEntryProcessor;
+
+import java.util.Map.Entry;
+
+/**
+ * Lookup API over an inverted index whose values are {@link
+ * CompressedPostings}, as written by {@link CompressedTfIdfP}.
+ * <p>
+ * A top-k lookup runs as an entry processor on the member that owns the
+ * word, so only the {@code k} best postings travel over the network and
+ * the owner decodes just the blocks that can contribute to them.
+ */
+public class CompressedIndex {
+
+    private final IMap<String, CompressedPostings> index;
+
+    public CompressedIndex(IMap<String, CompressedPostings> index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns the {@code k} documents with the highest TF-IDF score for
+     * the given word, best first. Returns an empty list if the word isn't
+     * in the index.
+     */
+    public PostingList topK(String word, int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive, but is " + k);
+        }
+        PostingList result = (PostingList) index.executeOnKey(word, new TopKProcessor(k));
+        return result != null ? result : new PostingList(0);
+    }
+
+    /**
+     * Returns the whole decoded posting list of the given word or {@code
+     * null} if the word isn't in the index.
+     */
+    public PostingList postings(String word) {
+        CompressedPostings postings = index.get(word);
+        return postings != null ? postings.decode() : null;
+    }
+
+    private static class TopKProcessor extends AbstractEntryProcessor<String, CompressedPostings> {
+        private final int k;
+
+        TopKProcessor(int k) {
+            super(false);
+            this.k = k;
+        }
+
+        @Override
+        public Object process(Entry<String, CompressedPostings> entry) {
+            CompressedPostings postings = entry.getValue();
+            return postings != null ? postings.topK(k) : null;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable posting list of a word, encoded into a single byte array.
+ * <p>
+ * All the TF-IDF scores in the list of a word share the same IDF factor,
+ * so the list stores the IDF once and each posting as the delta from the
+ * previous document ID and the term frequency, both as variable-length
+ * integers. A typical posting takes two or three bytes instead of the
+ * sixteen of a {@link PostingList} or the hundred-odd of an {@code
+ * Entry<Long, Double>}.
+ * <p>
+ * The postings are sorted by document ID and grouped into blocks of
+ * {@value #BLOCK_SIZE}. A small directory in front of the blocks records
+ * each block's last document ID and highest term frequency. {@link
+ * #topK(int)} uses it to visit the blocks in the order of their best
+ * score and stop as soon as no remaining block can beat the documents it
+ * already has, so it decodes only a small part of a long list.
+ * <p>
+ * The layout of the array:
+ * <pre>
+ * size: varint, idf: 8 bytes,
+ * directory: blockCount * (lastDocId delta: varint, maxTf: varint, byteLength: varint),
+ * blocks: size * (docId delta: varint, tf: varint)
+ * </pre>
+ */
+public class CompressedPostings implements DataSerializable {
+
+    static final int BLOCK_SIZE = 128;
+
+    private byte[] bytes;
+    private transient Directory directory;
+
+    /**
+     * Used by deserialization.
+     */
+    public CompressedPostings() {
+    }
+
+    private CompressedPostings(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Encodes the given posting list. Its scores must be the term
+     * frequencies (whole numbers); the TF-IDF score of each document is
+     * {@code tf * idf}. The list gets sorted by document ID.
+     */
+    public static CompressedPostings encode(PostingList termFrequencies, double idf) {
+        termFrequencies.sortByDocId();
+        int size = termFrequencies.size();
+        int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteWriter dir = new ByteWriter(4 * blockCount + 16);
+        ByteWriter blocks = new ByteWriter(3 * size);
+        dir.writeVarLong(size);
+        dir.writeLong(Double.doubleToLongBits(idf));
+        long prevDocId = 0;
+        long prevBlockLastDocId = 0;
+        for (int from = 0; from < size; from += BLOCK_SIZE) {
+            int to = Math.min(from + BLOCK_SIZE, size);
+            int blockStart = blocks.size();
+            long maxTf = 0;
+            for (int i = from; i < to; i++) {
+                long docId = termFrequencies.docId(i);
+                long tf = (long) termFrequencies.score(i);
+                blocks.writeVarLong(docId - prevDocId);
+                blocks.writeVarLong(tf);
+                prevDocId = docId;
+                maxTf = Math.max(maxTf, tf);
+            }
+            dir.writeVarLong(prevDocId - prevBlockLastDocId);
+            dir.writeVarLong(maxTf);
+            dir.writeVarLong(blocks.size() - blockStart);
+            prevBlockLastDocId = prevDocId;
+        }
+        byte[] bytes = Arrays.copyOf(dir.bytes, dir.size() + blocks.size());
+        System.arraycopy(blocks.bytes, 0, bytes, dir.size(), blocks.size());
+        return new CompressedPostings(bytes);
+    }
+
+    public int size() {
+        return directory().size;
+    }
+
+    public double idf() {
+        return directory().idf;
+    }
+
+    /**
+     * Returns the highest TF-IDF score in the list.
+     */
+    public double maxScore() {
+        Directory dir = directory();
+        long maxTf = 0;
+        for (long tf : dir.maxTfs) {
+            maxTf = Math.max(maxTf, tf);
+        }
+        return maxTf * dir.idf;
+    }
+
+    public int sizeInBytes() {
+        return bytes.length;
+    }
+
+    /**
+     * Returns the {@code k} documents with the highest TF-IDF scores, best
+     * first.
+     */
+    public PostingList topK(int k) {
+        Directory dir = directory();
+        TopKHeap heap = new TopKHeap(k);
+        int blockCount = dir.maxTfs.length;
+        // order the blocks by descending max TF; the low bits keep the index
+        long[] order = new long[blockCount];
+        for (int b = 0; b < blockCount; b++) {
+            long clampedTf = Math.min(dir.maxTfs[b], Integer.MAX_VALUE);
+            order[b] = -(clampedTf << 32 | b);
+        }
+        Arrays.sort(order);
+        for (long key : order) {
+            int b = (int) -key;
+            if (dir.maxTfs[b] * dir.idf < heap.threshold()) {
+                break;
+            }
+            ByteReader in = new ByteReader(bytes, dir.offsets[b]);
+            long docId = b == 0 ? 0 : dir.lastDocIds[b - 1];
+            int count = Math.min(BLOCK_SIZE, dir.size - b * BLOCK_SIZE);
+            for (int i = 0; i < count; i++) {
+                docId += in.readVarLong();
+                heap.offer(docId, in.readVarLong() * dir.idf);
+            }
+        }
+        return heap.drain();
+    }
+
+    /**
+     * Returns a cursor that decodes the postings one block at a time and
+     * skips over whole blocks in {@link PostingCursor#advance(long)
+     * advance()}.
+     */
+    public PostingCursor cursor() {
+        return new Cursor(directory());
+    }
+
+    /**
+     * Decodes the whole list into a {@link PostingList} of TF-IDF scores,
+     * sorted by document ID.
+     */
+    public PostingList decode() {
+        Directory dir = directory();
+        PostingList postings = new PostingList(dir.size);
+        ByteReader in = new ByteReader(bytes, dir.offsets.length > 0 ? dir.offsets[0] : bytes.length);
+        long docId = 0;
+        for (int i = 0; i < dir.size; i++) {
+            docId += in.readVarLong();
+            postings.add(docId, in.readVarLong() * dir.idf);
+        }
+        return postings;
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeByteArray(bytes);
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        bytes = in.readByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "CompressedPostings{size=" + size() + ", bytes=" + bytes.length + '}';
+    }
+
+    private Directory directory() {
+        if (directory == null) {
+            directory = new Directory(bytes);
+        }
+        return directory;
+    }
+
+    private final class Cursor implements PostingCursor {
+        private final Directory dir;
+        private final ByteReader in = new ByteReader(bytes, 0);
+        private final double maxScore;
+        private int block = -1;
+        private int remainingInBlock;
+        private long docId;
+        private long tf;
+
+        Cursor(Directory dir) {
+            this.dir = dir;
+            this.maxScore = CompressedPostings.this.maxScore();
+            next();
+        }
+
+        @Override
+        public long docId() {
+            return docId;
+        }
+
+        @Override
+        public double score() {
+            return tf * dir.idf;
+        }
+
+        @Override
+        public void next() {
+            if (remainingInBlock == 0) {
+                if (block + 1 == dir.offsets.length) {
+                    docId = NO_MORE_DOCS;
+                    return;
+                }
+                openBlock(block + 1);
+            }
+            docId += in.readVarLong();
+            tf = in.readVarLong();
+            remainingInBlock--;
+        }
+
+        @Override
+        public void advance(long target) {
+            if (docId >= target) {
+                return;
+            }
+            int b = block;
+            while (b < dir.lastDocIds.length && dir.lastDocIds[b] < target) {
+                b++;
+            }
+            if (b == dir.lastDocIds.length) {
+                docId = NO_MORE_DOCS;
+                return;
+            }
+            if (b != block) {
+                openBlock(b);
+                next();
+            }
+            while (docId < target) {
+                next();
+            }
+        }
+
+        @Override
+        public double maxScore() {
+            return maxScore;
+        }
+
+        private void openBlock(int b) {
+            block = b;
+            in.pos = dir.offsets[b];
+            docId = b == 0 ? 0 : dir.lastDocIds[b - 1];
+            remainingInBlock = Math.min(BLOCK_SIZE, dir.size - b * BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * The decoded header and block directory.
+     */
+    private static final class Directory {
+        final int size;
+        final double idf;
+        final long[] lastDocIds;
+        final long[] maxTfs;
+        final int[] offsets;
+
+        Directory(byte[] bytes) {
+            ByteReader in = new ByteReader(bytes, 0);
+            size = (int) in.readVarLong();
+            idf = Double.longBitsToDouble(in.readLong());
+            int blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            lastDocIds = new long[blockCount];
+            maxTfs = new long[blockCount];
+            offsets = new int[blockCount];
+            long lastDocId = 0;
+            int[] lengths = new int[blockCount];
+            for (int b = 0; b < blockCount; b++) {
+                lastDocId += in.readVarLong();
+                lastDocIds[b] = lastDocId;
+                maxTfs[b] = in.readVarLong();
+                lengths[b] = (int) in.readVarLong();
+            }
+            int offset = in.pos;
+            for (int b = 0; b < blockCount; b++) {
+                offsets[b] = offset;
+                offset += lengths[b];
+            }
+        }
+    }
+
+    static final class ByteWriter {
+        byte[] bytes;
+        private int size;
+
+        ByteWriter(int initialCapacity) {
+            bytes = new byte[Math.max(16, initialCapacity)];
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + extra, 2 * bytes.length));
+            }
+        }
+    }
+
+    static final class ByteReader {
+        private final byte[] bytes;
+        int pos;
+
+        ByteReader(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[pos++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = value << 8 | (bytes[pos++] & 0xFF);
+            }
+            return value;
+        }
+    }
+}
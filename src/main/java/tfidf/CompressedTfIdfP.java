@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+
+import javax.annotation.Nonnull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import static com.hazelcast.jet.Traversers.lazy;
+import static com.hazelcast.jet.Traversers.traverseIterable;
+import static com.hazelcast.jet.Util.entry;
+
+/**
+ * A drop-in replacement for {@code TfIdfCoreApi.TfIdfP} that emits each
+ * word's posting list as {@link CompressedPostings}. It takes the same
+ * input on the same ordinals and emits {@code Entry<String,
+ * CompressedPostings>}, ready for {@code writeMapP()}.
+ */
+//tag::s1[]
+public class CompressedTfIdfP extends AbstractProcessor {
+    private double logDocCount;
+
+    private final Map<String, PostingList> wordDocTf = new HashMap<>();
+    private final Traverser<Entry<String, CompressedPostings>> invertedIndexTraverser =
+            lazy(() -> traverseIterable(wordDocTf.entrySet())
+                    .map(this::toInvertedIndexEntry));
+
+    @Override
+    protected boolean tryProcess0(@Nonnull Object item) {
+        logDocCount = Math.log((Long) item);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess1(@Nonnull Object item) {
+        Entry<Entry<Long, String>, Long> e =
+                (Entry<Entry<Long, String>, Long>) item;
+        long docId = e.getKey().getKey();
+        String word = e.getKey().getValue();
+        long tf = e.getValue();
+        wordDocTf.computeIfAbsent(word, w -> new PostingList())
+                 .add(docId, tf);
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        return emitFromTraverser(invertedIndexTraverser);
+    }
+
+    private Entry<String, CompressedPostings> toInvertedIndexEntry(
+            Entry<String, PostingList> wordDocTf
+    ) {
+        PostingList tfs = wordDocTf.getValue();
+        double idf = logDocCount - Math.log(tfs.size());
+        return entry(wordDocTf.getKey(), CompressedPostings.encode(tfs, idf));
+    }
+}
+//end::s1[]
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import expertzone.CountingMap;
+import expertzone.WordTokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Builds the inverted TF-IDF index in a single JVM with fork-join tasks
+ * and primitive intermediate state. It computes the same index as {@code
+ * TfIdfJdkStreams}, but where that one groups a stream of {@code (docId,
+ * word)} tuples with {@code groupingBy(identity(), counting())}, paying a
+ * tuple and a boxed {@code Long} per word occurrence, this one works like
+ * this:
+ * <ol>
+ *     <li>the documents are split among fork-join tasks. A task counts
+ *     the words of one document at a time in a reused {@link
+ *     CountingMap} and appends a {@code (docId, tf)} posting per distinct
+ *     word to its own {@code word -> PostingList} map;
+ *     <li>as the tasks join, their maps are merged pairwise, so the merge
+ *     runs in parallel down the task tree. The documents of two tasks
+ *     are disjoint, so merging a word's lists is just an array copy;
+ *     <li>the posting lists of the final map are scaled from TF to TF-IDF
+ *     in parallel.
+ * </ol>
+ */
+public final class ForkJoinTfIdf {
+
+    private final Function<String, Path> docPathFn;
+    private final Set<String> stopwords;
+
+    /**
+     * @param docPathFn maps a document name to the path of its file
+     * @param stopwords the words to leave out of the index
+     */
+    public ForkJoinTfIdf(Function<String, Path> docPathFn, Set<String> stopwords) {
+        this.docPathFn = docPathFn;
+        this.stopwords = stopwords;
+    }
+
+    /**
+     * Builds the index of the given documents in the given pool.
+     *
+     * @param docId2Name the names of the documents, by document ID
+     * @return the TF-IDF posting lists, by word
+     */
+    public Map<String, PostingList> buildInvertedIndex(ForkJoinPool pool, Map<Long, String> docId2Name) {
+        List<Entry<Long, String>> docs = new ArrayList<>(docId2Name.entrySet());
+        int leafSize = Math.max(1, docs.size() / (4 * pool.getParallelism()));
+        Map<String, PostingList> index = pool.invoke(new CountTask(docs, 0, docs.size(), leafSize));
+        double logDocCount = Math.log(docs.size());
+        pool.invoke(new ScaleTask(new ArrayList<>(index.values()), 0, index.size(), logDocCount));
+        return index;
+    }
+
+    private final class CountTask extends RecursiveTask<Map<String, PostingList>> {
+        private final List<Entry<Long, String>> docs;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        CountTask(List<Entry<Long, String>> docs, int from, int to, int leafSize) {
+            this.docs = docs;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected Map<String, PostingList> compute() {
+            if (to - from <= leafSize) {
+                return countWords();
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(docs, from, mid, leafSize);
+            left.fork();
+            Map<String, PostingList> right = new CountTask(docs, mid, to, leafSize).compute();
+            return merge(left.join(), right);
+        }
+
+        private Map<String, PostingList> countWords() {
+            Map<String, PostingList> wordDocTf = new HashMap<>();
+            WordTokenizer tokenizer = new WordTokenizer();
+            CountingMap<String> tfs = new CountingMap<>();
+            for (Entry<Long, String> doc : docs.subList(from, to)) {
+                long docId = doc.getKey();
+                try (BufferedReader reader = Files.newBufferedReader(docPathFn.apply(doc.getValue()))) {
+                    for (String line; (line = reader.readLine()) != null; ) {
+                        tokenizer.tokenize(line);
+                        for (String word; (word = tokenizer.next()) != null; ) {
+                            if (!stopwords.contains(word)) {
+                                tfs.add(word, 1);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                tfs.forEach((word, tf) ->
+                        wordDocTf.computeIfAbsent(word, w -> new PostingList()).add(docId, tf));
+                tfs.clear();
+            }
+            return wordDocTf;
+        }
+
+        private Map<String, PostingList> merge(Map<String, PostingList> a, Map<String, PostingList> b) {
+            Map<String, PostingList> larger = a.size() >= b.size() ? a : b;
+            Map<String, PostingList> smaller = larger == a ? b : a;
+            for (Entry<String, PostingList> e : smaller.entrySet()) {
+                PostingList postings = larger.putIfAbsent(e.getKey(), e.getValue());
+                if (postings != null) {
+                    postings.addAll(e.getValue());
+                }
+            }
+            return larger;
+        }
+    }
+
+    private static final class ScaleTask extends RecursiveAction {
+        private static final int LEAF_SIZE = 1024;
+
+        private final List<PostingList> postingLists;
+        private final int from;
+        private final int to;
+        private final double logDocCount;
+
+        ScaleTask(List<PostingList> postingLists, int from, int to, double logDocCount) {
+            this.postingLists = postingLists;
+            this.from = from;
+            this.to = to;
+            this.logDocCount = logDocCount;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScaleTask(postingLists, from, mid, logDocCount),
+                        new ScaleTask(postingLists, mid, to, logDocCount));
+                return;
+            }
+            for (PostingList postings : postingLists.subList(from, to)) {
+                postings.scale(logDocCount - Math.log(postings.size()));
+                postings.trimToSize();
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.jet.JetException;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.function.DistributedFunction;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import static com.hazelcast.jet.Util.entry;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Replaces the {@code doc-lines} and {@code tokenize} vertices of the
+ * TF-IDF DAG. Instead of reading whole documents on a single processor
+ * per member, every processor in the cluster memory-maps every document
+ * and tokenizes its own share of it: the document is split into as many
+ * byte ranges as there are processors and processor {@code i} takes the
+ * {@code i}-th range. A word belongs to the range in which it starts.
+ * <p>
+ * The tokenizer works directly on the mapped bytes. A word is a run of
+ * ASCII letters, digits and underscores, which is what {@code
+ * Pattern.compile("\\W+").split()} produces on UTF-8 text, because all the
+ * bytes of a multi-byte UTF-8 character are outside the ASCII range. No
+ * line strings are created, only one string per emitted word.
+ * <p>
+ * Inbound edges:
+ * <ol start="0">
+ *     <li>the stopword set, a single {@code Set<String>} item. Must have
+ *     higher priority than edge 1.
+ *     <li>{@code Entry<Long, String>} items mapping the document ID to its
+ *     name. Must be a distributed broadcast edge so that every processor
+ *     sees all the documents.
+ * </ol>
+ * It emits {@code Entry<Long, String>} items mapping the document ID to
+ * a word, just like {@code TokenizeP}.
+ * <p>
+ * The documents must be available under the same path on all members.
+ * Each processor's byte range of a document must be smaller than 2 GB.
+ */
+public class MappedDocTokenizeP extends AbstractProcessor {
+
+    /**
+     * How far beyond the end of its range a processor will look for the
+     * end of the last word it started.
+     */
+    private static final int MAX_WORD_OVERHANG = 1 << 16;
+
+    private final DistributedFunction<String, Path> docPathFn;
+    private final List<Entry<Long, String>> docs = new ArrayList<>();
+
+    private Set<String> stopwords;
+    private int processorIndex;
+    private int totalParallelism;
+
+    private int nextDocIndex;
+    private long docId;
+    private MappedByteBuffer buf;
+    private int pos;
+    private int rangeEnd;
+    private char[] chars = new char[64];
+    private Entry<Long, String> pendingItem;
+
+    /**
+     * @param docPathFn resolves a document name to the path of its file
+     */
+    public MappedDocTokenizeP(DistributedFunction<String, Path> docPathFn) {
+        this.docPathFn = docPathFn;
+    }
+
+    @Override
+    public boolean isCooperative() {
+        // Touching a mapped page that isn't in memory yet blocks on disk IO
+        return false;
+    }
+
+    @Override
+    protected void init(@Nonnull Context context) {
+        processorIndex = context.globalProcessorIndex();
+        totalParallelism = context.totalParallelism();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess0(@Nonnull Object item) {
+        stopwords = (Set<String>) item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess1(@Nonnull Object item) {
+        docs.add((Entry<Long, String>) item);
+        return true;
+    }
+
+    @Override
+    public boolean complete() {
+        while (true) {
+            if (pendingItem != null) {
+                if (!tryEmit(pendingItem)) {
+                    return false;
+                }
+                pendingItem = null;
+            }
+            if (buf == null) {
+                if (nextDocIndex == docs.size()) {
+                    return true;
+                }
+                mapNextDoc();
+                continue;
+            }
+            String word = nextWord();
+            if (word == null) {
+                buf = null;
+            } else if (!stopwords.contains(word)) {
+                pendingItem = entry(docId, word);
+            }
+        }
+    }
+
+    private void mapNextDoc() {
+        Entry<Long, String> doc = docs.get(nextDocIndex++);
+        Path path = docPathFn.apply(doc.getValue());
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+            long start = size * processorIndex / totalParallelism;
+            long end = size * (processorIndex + 1) / totalParallelism;
+            if (start == end) {
+                return;
+            }
+            // Map one byte before the range to see if it starts mid-word
+            long mapStart = Math.max(0, start - 1);
+            long mapEnd = Math.min(size, end + MAX_WORD_OVERHANG);
+            if (mapEnd - mapStart > Integer.MAX_VALUE) {
+                throw new JetException("Range of " + path + " too large to map: " + (end - start));
+            }
+            buf = channel.map(READ_ONLY, mapStart, mapEnd - mapStart);
+            docId = doc.getKey();
+            pos = (int) (start - mapStart);
+            rangeEnd = (int) (end - mapStart);
+            if (pos > 0 && isWordByte(buf.get(pos - 1))) {
+                // The word at the start of the range belongs to the previous one
+                while (pos < rangeEnd && isWordByte(buf.get(pos))) {
+                    pos++;
+                }
+            }
+        } catch (IOException e) {
+            throw new JetException("Failed to map " + path, e);
+        }
+    }
+
+    /**
+     * Returns the next lowercased word that starts within the range, or
+     * {@code null} if there are no more.
+     */
+    private String nextWord() {
+        while (pos < rangeEnd && !isWordByte(buf.get(pos))) {
+            pos++;
+        }
+        if (pos >= rangeEnd) {
+            return null;
+        }
+        int limit = buf.limit();
+        int len = 0;
+        for (byte b; pos < limit && isWordByte(b = buf.get(pos)); pos++) {
+            if (len == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * len);
+            }
+            chars[len++] = (char) (b >= 'A' && b <= 'Z' ? b | 0x20 : b);
+        }
+        return new String(chars, 0, len);
+    }
+
+    private static boolean isWordByte(byte b) {
+        return b >= 'a' && b <= 'z'
+                || b >= 'A' && b <= 'Z'
+                || b >= '0' && b <= '9'
+                || b == '_';
+    }
+}
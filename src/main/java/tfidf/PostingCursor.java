@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+/**
+ * Iterates over a posting list in the order of ascending document IDs.
+ * A new cursor is positioned on the first posting.
+ */
+public interface PostingCursor {
+
+    /**
+     * The value of {@link #docId()} once the cursor is exhausted.
+     */
+    long NO_MORE_DOCS = Long.MAX_VALUE;
+
+    /**
+     * Returns the document ID of the current posting or {@link
+     * #NO_MORE_DOCS}.
+     */
+    long docId();
+
+    /**
+     * Returns the TF-IDF score of the current posting.
+     */
+    double score();
+
+    /**
+     * Moves to the next posting.
+     */
+    void next();
+
+    /**
+     * Moves to the first posting whose document ID is at least {@code
+     * target}. Does nothing if the cursor is already there.
+     */
+    void advance(long target);
+
+    /**
+     * Returns the highest score in the whole list.
+     */
+    double maxScore();
+}
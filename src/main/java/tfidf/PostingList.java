@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The list of documents that contain a word, together with a score for
+ * each of them. It is a compact replacement for {@code List<Entry<Long,
+ * Double>>}: it keeps the document IDs and scores in two parallel
+ * primitive arrays that grow as needed, so adding a posting allocates
+ * nothing in the common case and the whole list costs two array headers
+ * instead of three objects per posting.
+ */
+public class PostingList implements DataSerializable {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private long[] docIds;
+    private double[] scores;
+    private int size;
+
+    public PostingList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public PostingList(int initialCapacity) {
+        docIds = new long[initialCapacity];
+        scores = new double[initialCapacity];
+    }
+
+    public void add(long docId, double score) {
+        ensureRoomForOne();
+        docIds[size] = docId;
+        scores[size] = score;
+        size++;
+    }
+
+    private void ensureRoomForOne() {
+        if (size == docIds.length) {
+            int newCapacity = Math.max(INITIAL_CAPACITY, size + (size >> 1));
+            docIds = Arrays.copyOf(docIds, newCapacity);
+            scores = Arrays.copyOf(scores, newCapacity);
+        }
+    }
+
+    /**
+     * Appends all the postings of the given list to this one.
+     */
+    public void addAll(PostingList other) {
+        int newSize = size + other.size;
+        if (newSize > docIds.length) {
+            docIds = Arrays.copyOf(docIds, newSize);
+            scores = Arrays.copyOf(scores, newSize);
+        }
+        System.arraycopy(other.docIds, 0, docIds, size, other.size);
+        System.arraycopy(other.scores, 0, scores, size, other.size);
+        size = newSize;
+    }
+
+    /**
+     * Sets the score of the given document, inserting a posting for it at
+     * its place in document ID order if there isn't one yet. Like {@link
+     * #remove} and {@link #indexOf}, this expects the list to be sorted by
+     * document ID, which it is if it was only ever changed by these
+     * methods. Inserting shifts the postings with higher IDs, but when
+     * documents arrive in ID order the new posting goes to the end.
+     */
+    public void put(long docId, double score) {
+        int index = Arrays.binarySearch(docIds, 0, size, docId);
+        if (index >= 0) {
+            scores[index] = score;
+            return;
+        }
+        index = -index - 1;
+        ensureRoomForOne();
+        System.arraycopy(docIds, index, docIds, index + 1, size - index);
+        System.arraycopy(scores, index, scores, index + 1, size - index);
+        docIds[index] = docId;
+        scores[index] = score;
+        size++;
+    }
+
+    /**
+     * Removes the posting of the given document from a list sorted by
+     * document ID, keeping it sorted.
+     *
+     * @return whether the list contained the document
+     */
+    public boolean remove(long docId) {
+        int index = indexOf(docId);
+        if (index < 0) {
+            return false;
+        }
+        size--;
+        System.arraycopy(docIds, index + 1, docIds, index, size - index);
+        System.arraycopy(scores, index + 1, scores, index, size - index);
+        return true;
+    }
+
+    /**
+     * Returns the index of the given document's posting in a list sorted
+     * by document ID, or -1 if there isn't one.
+     */
+    public int indexOf(long docId) {
+        int index = Arrays.binarySearch(docIds, 0, size, docId);
+        return index >= 0 ? index : -1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long docId(int index) {
+        checkIndex(index);
+        return docIds[index];
+    }
+
+    public double score(int index) {
+        checkIndex(index);
+        return scores[index];
+    }
+
+    /**
+     * Multiplies all the scores by the given factor. {@code TfIdfP} uses
+     * this to turn TF scores into TF-IDF scores in place.
+     */
+    public void scale(double factor) {
+        for (int i = 0; i < size; i++) {
+            scores[i] *= factor;
+        }
+    }
+
+    /**
+     * Returns a trimmed copy of this list with all the scores multiplied
+     * by the given factor.
+     */
+    public PostingList scaledCopy(double factor) {
+        PostingList copy = new PostingList(size);
+        System.arraycopy(docIds, 0, copy.docIds, 0, size);
+        for (int i = 0; i < size; i++) {
+            copy.scores[i] = scores[i] * factor;
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Sorts the postings by ascending document ID.
+     */
+    public void sortByDocId() {
+        sort(0, size - 1);
+    }
+
+    /**
+     * Returns a cursor over a sorted copy of this list.
+     */
+    public PostingCursor cursor() {
+        PostingList sorted = scaledCopy(1.0);
+        sorted.sortByDocId();
+        return sorted.new Cursor();
+    }
+
+    /**
+     * Shrinks the backing arrays to the current size.
+     */
+    public void trimToSize() {
+        if (size < docIds.length) {
+            docIds = Arrays.copyOf(docIds, size);
+            scores = Arrays.copyOf(scores, size);
+        }
+    }
+
+    @Override
+    public void writeData(ObjectDataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeLong(docIds[i]);
+            out.writeDouble(scores[i]);
+        }
+    }
+
+    @Override
+    public void readData(ObjectDataInput in) throws IOException {
+        size = in.readInt();
+        docIds = new long[size];
+        scores = new double[size];
+        for (int i = 0; i < size; i++) {
+            docIds[i] = in.readLong();
+            scores[i] = in.readDouble();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(docIds[i]).append('=').append(scores[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private final class Cursor implements PostingCursor {
+        private final double maxScore;
+        private int index;
+
+        Cursor() {
+            double max = 0;
+            for (int i = 0; i < size; i++) {
+                max = Math.max(max, scores[i]);
+            }
+            maxScore = max;
+        }
+
+        @Override
+        public long docId() {
+            return index < size ? docIds[index] : NO_MORE_DOCS;
+        }
+
+        @Override
+        public double score() {
+            return scores[index];
+        }
+
+        @Override
+        public void next() {
+            index++;
+        }
+
+        @Override
+        public void advance(long target) {
+            int low = index;
+            int high = size;
+            // binary search for the first docId >= target
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (docIds[mid] < target) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            index = low;
+        }
+
+        @Override
+        public double maxScore() {
+            return maxScore;
+        }
+    }
+
+    private void sort(int from, int to) {
+        while (from < to) {
+            long pivot = docIds[(from + to) >>> 1];
+            int i = from;
+            int j = to;
+            while (i <= j) {
+                while (docIds[i] < pivot) {
+                    i++;
+                }
+                while (docIds[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // recurse into the smaller part to bound the stack depth
+            if (j - from < to - i) {
+                sort(from, j);
+                from = i;
+            } else {
+                sort(i, to);
+                to = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long docId = docIds[i];
+        docIds[i] = docIds[j];
+        docIds[j] = docId;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.core.AbstractProcessor;
+import expertzone.CountingMap;
+import expertzone.WordTokenizer;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import static com.hazelcast.jet.Util.entry;
+
+/**
+ * A variant of {@code TfIdfCoreApi.TokenizeP} that counts the {@code
+ * (docId, word)} pairs locally before emitting them. Instead of one
+ * {@code Entry<Long, String>} per word occurrence it emits {@code
+ * Entry<Entry<Long, String>, Long>} partial counts, so the downstream
+ * {@code tf} vertex must sum the counts rather than count the items. The
+ * traffic on the partitioned edge shrinks by the average number of times
+ * a word repeats in the lines this processor sees before a flush.
+ * <p>
+ * The processor flushes its partial counts when it holds {@code
+ * maxPairs} distinct pairs, when {@code maxDelayMillis} have passed since
+ * the first unflushed pair was counted, and at the end of the input. It
+ * takes the same input on the same ordinals as {@code TokenizeP}.
+ */
+public class PreCountingTokenizeP extends AbstractProcessor {
+
+    public static final int DEFAULT_MAX_PAIRS = 1 << 16;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+
+    private final int maxPairs;
+    private final long maxDelayNanos;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final Map<Long, CountingMap<String>> docWordCounts = new HashMap<>();
+    private final ArrayDeque<CountingMap<String>> spareCounters = new ArrayDeque<>();
+    private final FlushTraverser flushTraverser = new FlushTraverser();
+
+    private Set<String> stopwords;
+    private int pairCount;
+    private long firstPairNanos;
+
+    public PreCountingTokenizeP() {
+        this(DEFAULT_MAX_PAIRS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public PreCountingTokenizeP(int maxPairs, long maxDelayMillis) {
+        this.maxPairs = maxPairs;
+        this.maxDelayNanos = maxDelayMillis * 1_000_000;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess0(@Nonnull Object item) {
+        stopwords = (Set<String>) item;
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess1(@Nonnull Object item) {
+        if (flushTraverser.isFlushing() && !emitFromTraverser(flushTraverser)) {
+            return false;
+        }
+        Entry<Long, String> e = (Entry<Long, String>) item;
+        CountingMap<String> wordCounts = docWordCounts.computeIfAbsent(e.getKey(), x -> newCounter());
+        tokenizer.tokenize(e.getValue());
+        for (String word; (word = tokenizer.next()) != null; ) {
+            if (!stopwords.contains(word) && wordCounts.add(word, 1) == 1) {
+                if (pairCount++ == 0) {
+                    firstPairNanos = System.nanoTime();
+                }
+            }
+        }
+        if (pairCount >= maxPairs || isFlushDue()) {
+            flushTraverser.start();
+            emitFromTraverser(flushTraverser);
+        }
+        return true;
+    }
+
+    /**
+     * Flushes the partial counts that are due when no lines arrive, so
+     * they don't wait for the next line or the end of the input.
+     */
+    @Override
+    public boolean tryProcess() {
+        if (!flushTraverser.isFlushing()) {
+            if (!isFlushDue()) {
+                return true;
+            }
+            flushTraverser.start();
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    @Override
+    public boolean complete() {
+        if (!flushTraverser.isFlushing()) {
+            flushTraverser.start();
+        }
+        return emitFromTraverser(flushTraverser);
+    }
+
+    private boolean isFlushDue() {
+        return pairCount > 0 && System.nanoTime() - firstPairNanos >= maxDelayNanos;
+    }
+
+    private CountingMap<String> newCounter() {
+        CountingMap<String> counter = spareCounters.poll();
+        return counter != null ? counter : new CountingMap<>();
+    }
+
+    /**
+     * Emits the partial counts of one document after another, returning
+     * each document's counter to the spares once it's drained.
+     */
+    private final class FlushTraverser implements Traverser<Entry<Entry<Long, String>, Long>> {
+        private final ArrayDeque<Entry<Entry<Long, String>, Long>> pending = new ArrayDeque<>();
+        private boolean flushing;
+
+        void start() {
+            for (Entry<Long, CountingMap<String>> e : docWordCounts.entrySet()) {
+                long docId = e.getKey();
+                CountingMap<String> counts = e.getValue();
+                counts.forEach((word, count) -> pending.add(entry(entry(docId, word), count)));
+                counts.clear();
+                spareCounters.add(counts);
+            }
+            docWordCounts.clear();
+            pairCount = 0;
+            flushing = true;
+        }
+
+        boolean isFlushing() {
+            return flushing;
+        }
+
+        @Override
+        public Entry<Entry<Long, String>, Long> next() {
+            Entry<Entry<Long, String>, Long> item = pending.poll();
+            if (item == null) {
+                flushing = false;
+            }
+            return item;
+        }
+    }
+}
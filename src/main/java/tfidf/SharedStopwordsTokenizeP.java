@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.core.Processor;
+import com.hazelcast.jet.core.ProcessorSupplier;
+import com.hazelcast.jet.function.DistributedSupplier;
+import expertzone.WordTokenizer;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Map.Entry;
+import java.util.stream.Stream;
+
+import static com.hazelcast.jet.Util.entry;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A variant of {@code TfIdfCoreApi.TokenizeP} that gets the stopwords
+ * from a {@link StopwordSet} shared by all its instances on the member
+ * instead of receiving a copy of the set over a broadcast edge. It has a
+ * single inbound edge, the {@code Entry<Long, String>} document lines,
+ * and emits the same {@code Entry<Long, String>} items as {@code
+ * TokenizeP}.
+ * <p>
+ * Create the vertex with {@link #tokenizeP}: its processor supplier is
+ * instantiated once per member, loads the stopwords in {@code init()} and
+ * hands the same set to each processor it creates. This is the Core API
+ * counterpart of a {@code ContextFactory} with {@code shareLocally()}.
+ */
+public class SharedStopwordsTokenizeP extends AbstractProcessor {
+
+    private final StopwordSet stopwords;
+    private final WordTokenizer tokenizer = new WordTokenizer();
+    private final FlatMapper<Entry<Long, String>, Entry<Long, String>> flatMapper =
+            flatMapper(e -> tokenizer.tokenize(e.getValue())
+                                     .filter(word -> !stopwords.contains(word))
+                                     .map(word -> entry(e.getKey(), word)));
+
+    SharedStopwordsTokenizeP(StopwordSet stopwords) {
+        this.stopwords = stopwords;
+    }
+
+    /**
+     * Returns the supplier of the tokenizing processors.
+     *
+     * @param loadStopwordsFn loads the stopwords, called once on each member
+     */
+    public static ProcessorSupplier tokenizeP(
+            DistributedSupplier<? extends Collection<String>> loadStopwordsFn
+    ) {
+        return new Supplier(loadStopwordsFn);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected boolean tryProcess0(@Nonnull Object item) {
+        return flatMapper.tryProcess((Entry<Long, String>) item);
+    }
+
+    private static final class Supplier implements ProcessorSupplier {
+        private static final long serialVersionUID = 1L;
+
+        private final DistributedSupplier<? extends Collection<String>> loadStopwordsFn;
+        private transient StopwordSet stopwords;
+
+        Supplier(DistributedSupplier<? extends Collection<String>> loadStopwordsFn) {
+            this.loadStopwordsFn = loadStopwordsFn;
+        }
+
+        @Override
+        public void init(@Nonnull Context context) {
+            stopwords = StopwordSet.of(loadStopwordsFn.get());
+        }
+
+        @Nonnull
+        @Override
+        public Collection<? extends Processor> get(int count) {
+            return Stream.generate(() -> new SharedStopwordsTokenizeP(stopwords))
+                         .limit(count)
+                         .collect(toList());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable set of words with a single-probe lookup: it uses a
+ * perfect hash function built for its words, so {@link
+ * #contains(CharSequence)} computes one hash of the candidate, looks at
+ * exactly one slot and compares the characters at most once. The lookup
+ * allocates nothing and accepts any {@code CharSequence}, so it can also
+ * check a word that hasn't been turned into a {@code String} yet.
+ * <p>
+ * The perfect hash function is built with the "hash and displace"
+ * method: the words are hashed into small buckets and for each bucket,
+ * biggest first, the build searches for a displacement seed that sends
+ * all the bucket's words into slots that are still free. A lookup hashes
+ * the word, finds its bucket and uses the bucket's seed to compute the
+ * one slot where the word can be.
+ */
+public final class StopwordSet {
+
+    private static final int MAX_SEED_ATTEMPTS = 1 << 16;
+
+    private final String[] slots;
+    private final int[] seeds;
+    private final int size;
+
+    private StopwordSet(String[] slots, int[] seeds, int size) {
+        this.slots = slots;
+        this.seeds = seeds;
+        this.size = size;
+    }
+
+    /**
+     * Builds a set of the given words.
+     */
+    public static StopwordSet of(Collection<String> words) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(words));
+        int bucketCount = Integer.highestOneBit(Math.max(1, distinct.size() / 4) * 2 - 1);
+        for (int slotCount = Integer.highestOneBit(Math.max(1, distinct.size()) * 2 - 1) << 1; ;
+             slotCount <<= 1) {
+            StopwordSet set = tryBuild(distinct, bucketCount, slotCount);
+            if (set != null) {
+                return set;
+            }
+        }
+    }
+
+    public boolean contains(CharSequence word) {
+        long hash = hash(word);
+        String candidate = slots[slot(hash, seeds[bucket(hash, seeds.length)], slots.length)];
+        return candidate != null && candidate.contentEquals(word);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static StopwordSet tryBuild(List<String> words, int bucketCount, int slotCount) {
+        List<List<String>> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        Map<Long, String> byHash = new HashMap<>();
+        for (String word : words) {
+            long hash = hash(word);
+            String other = byHash.put(hash, word);
+            if (other != null) {
+                throw new IllegalArgumentException(
+                        "Words '" + word + "' and '" + other + "' have the same 64-bit hash");
+            }
+            buckets.get(bucket(hash, bucketCount)).add(word);
+        }
+        Integer[] order = new Integer[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> buckets.get(b).size() - buckets.get(a).size());
+
+        String[] slots = new String[slotCount];
+        int[] seeds = new int[bucketCount];
+        int[] taken = new int[0];
+        for (int b : order) {
+            List<String> bucket = buckets.get(b);
+            if (bucket.isEmpty()) {
+                break;
+            }
+            if (taken.length < bucket.size()) {
+                taken = new int[bucket.size()];
+            }
+            int seed = findSeed(bucket, slots, taken);
+            if (seed < 0) {
+                return null;
+            }
+            seeds[b] = seed;
+            for (String word : bucket) {
+                slots[slot(hash(word), seed, slotCount)] = word;
+            }
+        }
+        return new StopwordSet(slots, seeds, words.size());
+    }
+
+    /**
+     * Finds a seed that puts all the words of the bucket into distinct
+     * free slots, or returns -1.
+     */
+    private static int findSeed(List<String> bucket, String[] slots, int[] taken) {
+        nextSeed:
+        for (int seed = 0; seed < MAX_SEED_ATTEMPTS; seed++) {
+            for (int i = 0; i < bucket.size(); i++) {
+                int slot = slot(hash(bucket.get(i)), seed, slots.length);
+                if (slots[slot] != null) {
+                    continue nextSeed;
+                }
+                for (int j = 0; j < i; j++) {
+                    if (taken[j] == slot) {
+                        continue nextSeed;
+                    }
+                }
+                taken[i] = slot;
+            }
+            return seed;
+        }
+        return -1;
+    }
+
+    private static int bucket(long hash, int bucketCount) {
+        return (int) (hash >>> 32) & (bucketCount - 1);
+    }
+
+    private static int slot(long hash, int seed, int slotCount) {
+        long h = hash ^ (seed * 0x9E3779B97F4A7C15L);
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & (slotCount - 1);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the characters.
+     */
+    private static long hash(CharSequence word) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            h = (h ^ word.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+}
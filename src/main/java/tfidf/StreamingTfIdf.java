@@ -0,0 +1,365 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.Traverser;
+import com.hazelcast.jet.config.JetConfig;
+import com.hazelcast.jet.core.AbstractProcessor;
+import com.hazelcast.jet.pipeline.ContextFactory;
+import com.hazelcast.jet.pipeline.Pipeline;
+import com.hazelcast.jet.pipeline.Sink;
+import com.hazelcast.jet.pipeline.Sources;
+import com.hazelcast.map.journal.EventJournalMapEvent;
+import expertzone.WordTokenizer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static com.hazelcast.core.EntryEventType.ADDED;
+import static com.hazelcast.core.EntryEventType.REMOVED;
+import static com.hazelcast.core.EntryEventType.UPDATED;
+import static com.hazelcast.jet.Traversers.traverseIterable;
+import static com.hazelcast.jet.Util.entry;
+import static com.hazelcast.jet.pipeline.JournalInitialPosition.START_FROM_OLDEST;
+import static com.hazelcast.jet.pipeline.SinkBuilder.sinkBuilder;
+import static java.util.Collections.emptyMap;
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * Maintains the inverted TF-IDF index of {@code TfIdfCoreApi}
+ * incrementally. Instead of reading the {@code docId_name} map once, the
+ * job follows its event journal: when a document is added, changed or
+ * removed, it updates only the postings of the words that document
+ * contains (or used to contain).
+ * <p>
+ * The IDF part of the score depends on the total document count, so
+ * strictly speaking every document change affects the score of every
+ * word. The job tolerates some staleness instead: each processor scores
+ * its words against the document count it last rescored with, and only
+ * rescores all its words when the actual count drifts away from that by
+ * more than {@link #IDF_DRIFT_THRESHOLD}. The document count is the size
+ * of the {@code docId_name} map itself: the job reads it instead of
+ * maintaining it, so a replayed event can't count a document twice.
+ * <p>
+ * The per-document and per-word state isn't saved to snapshots. After a
+ * restart the job rebuilds it by replaying the journal from the oldest
+ * event, which is why it starts there. This only works while the journal
+ * still holds the latest event of every document in the map: once it has
+ * wrapped, a restarted job is missing the documents whose events were
+ * overwritten, so size the journal for the whole map.
+ */
+public class StreamingTfIdf {
+
+    static final String DOCID_NAME = "docId_name";
+    static final String INVERTED_INDEX = "inverted-index";
+
+    /**
+     * The relative change in the document count that triggers rescoring
+     * of all the words.
+     */
+    static final double IDF_DRIFT_THRESHOLD = 0.05;
+
+    /**
+     * How often a processor emits the posting lists it changed. It also
+     * reads the document count this often.
+     */
+    static final long FLUSH_MILLIS = 100;
+
+    static JetConfig config() {
+        //tag::s1[]
+        JetConfig cfg = new JetConfig();
+        cfg.getHazelcastConfig()
+           .getMapEventJournalConfig(DOCID_NAME)
+           .setEnabled(true)
+           .setCapacity(100_000);
+        //end::s1[]
+        return cfg;
+    }
+
+    static Pipeline buildPipeline() {
+        //tag::s2[]
+        Pipeline p = Pipeline.create();
+        p.drawFrom(Sources.<DocChange, Long, String>mapJournal(DOCID_NAME,
+                e -> e.getType() == ADDED || e.getType() == UPDATED
+                        || e.getType() == REMOVED,
+                DocChange::fromEvent, START_FROM_OLDEST))
+         .mapUsingContext(                                                     // <1>
+                 ContextFactory.withCreateFn(jet -> loadStopwords()).nonCooperative(),
+                 StreamingTfIdf::docTerms)
+         .groupingKey(DocTerms::docId)                                         // <2>
+         .flatMapUsingContext(
+                 ContextFactory.withCreateFn(jet -> new ForwardIndex()),
+                 (forwardIndex, docId, docTerms) -> forwardIndex.apply(docTerms))
+         .groupingKey(TermDelta::word)                                         // <3>
+         .<Entry<String, PostingList>>customTransform("index-partition",
+                 IndexPartitionP::new)
+         .drainTo(invertedIndexSink());                                        // <4>
+        //end::s2[]
+        return p;
+    }
+
+    /**
+     * Reads the document and counts its words.
+     */
+    private static DocTerms docTerms(Set<String> stopwords, DocChange change) {
+        if (change.name == null) {
+            return new DocTerms(change.docId, null);
+        }
+        Map<String, Long> tfs = new HashMap<>();
+        WordTokenizer tokenizer = new WordTokenizer();
+        try (Stream<String> lines = docLines("/books/" + change.name)) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                tokenizer.tokenize(line);
+                for (String word; (word = tokenizer.next()) != null; ) {
+                    if (!stopwords.contains(word)) {
+                        tfs.merge(word, 1L, Long::sum);
+                    }
+                }
+            }
+        }
+        return new DocTerms(change.docId, tfs);
+    }
+
+    private static Set<String> loadStopwords() {
+        try (Stream<String> lines = docLines("/stopwords.txt")) {
+            return lines.collect(toSet());
+        }
+    }
+
+    private static Stream<String> docLines(String name) {
+        try {
+            return Files.lines(Paths.get(StreamingTfIdf.class.getResource(name).toURI()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Writes the rescored posting lists to the {@code inverted-index} map.
+     * An empty posting list means the word no longer occurs in any
+     * document and its entry is deleted.
+     */
+    private static Sink<Entry<String, PostingList>> invertedIndexSink() {
+        return sinkBuilder("inverted-index-sink",
+                ctx -> ctx.jetInstance().<String, PostingList>getMap(INVERTED_INDEX))
+                .<Entry<String, PostingList>>receiveFn((map, e) -> {
+                    if (e.getValue().isEmpty()) {
+                        map.delete(e.getKey());
+                    } else {
+                        map.set(e.getKey(), e.getValue());
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * A change of the {@code docId_name} map. {@code name} is {@code null}
+     * if the document was removed.
+     */
+    static final class DocChange implements Serializable {
+        final long docId;
+        final String name;
+
+        DocChange(long docId, String name) {
+            this.docId = docId;
+            this.name = name;
+        }
+
+        static DocChange fromEvent(EventJournalMapEvent<Long, String> e) {
+            return new DocChange(e.getKey(), e.getType() == REMOVED ? null : e.getNewValue());
+        }
+    }
+
+    /**
+     * The term frequencies of a document, {@code null} if the document was
+     * removed.
+     */
+    static final class DocTerms implements Serializable {
+        final long docId;
+        final Map<String, Long> tfs;
+
+        DocTerms(long docId, Map<String, Long> tfs) {
+            this.docId = docId;
+            this.tfs = tfs;
+        }
+
+        long docId() {
+            return docId;
+        }
+    }
+
+    /**
+     * The new TF of a word in a document, zero if the word no longer
+     * occurs in it.
+     */
+    static final class TermDelta implements Serializable {
+        final String word;
+        final long docId;
+        final long tf;
+
+        TermDelta(String word, long docId, long tf) {
+            this.word = word;
+            this.docId = docId;
+            this.tf = tf;
+        }
+
+        String word() {
+            return word;
+        }
+    }
+
+    /**
+     * Remembers the words of each document seen by this processor so that
+     * a changed document can be diffed against its previous version.
+     */
+    static final class ForwardIndex {
+        private final Map<Long, Map<String, Long>> docTfs = new HashMap<>();
+
+        Traverser<TermDelta> apply(DocTerms doc) {
+            Map<String, Long> oldTfs = doc.tfs == null
+                    ? docTfs.remove(doc.docId)
+                    : docTfs.put(doc.docId, doc.tfs);
+            Map<String, Long> previous = oldTfs != null ? oldTfs : emptyMap();
+            Map<String, Long> current = doc.tfs != null ? doc.tfs : emptyMap();
+            List<TermDelta> deltas = new ArrayList<>();
+            for (String word : previous.keySet()) {
+                if (!current.containsKey(word)) {
+                    deltas.add(new TermDelta(word, doc.docId, 0));
+                }
+            }
+            for (Entry<String, Long> e : current.entrySet()) {
+                if (!e.getValue().equals(previous.get(e.getKey()))) {
+                    deltas.add(new TermDelta(e.getKey(), doc.docId, e.getValue()));
+                }
+            }
+            return traverseIterable(deltas);
+        }
+    }
+
+    /**
+     * The part of the inverted index owned by this processor. It keeps the
+     * raw TF scores and emits TF-IDF scored copies of the posting lists it
+     * changed. It emits them at most once every {@link #FLUSH_MILLIS}, no
+     * matter how many deltas a list received in the meantime: otherwise
+     * loading N documents that contain the same word would emit N ever
+     * longer copies of its posting list.
+     */
+    static final class IndexPartitionP extends AbstractProcessor {
+        private final Map<String, PostingList> wordDocTf = new HashMap<>();
+        private final Set<String> changedWords = new HashSet<>();
+        private IMap<Long, String> docs;
+        private long scoredDocCount;
+        private long flushedAt = System.nanoTime();
+        private Traverser<Entry<String, PostingList>> flushTraverser;
+
+        @Override
+        public boolean isCooperative() {
+            return false;
+        }
+
+        @Override
+        protected void init(Context context) {
+            docs = context.jetInstance().getMap(DOCID_NAME);
+        }
+
+        @Override
+        protected boolean tryProcess0(Object item) {
+            if ((flushTraverser != null || isFlushDue()) && !flush()) {
+                return false;
+            }
+            TermDelta delta = (TermDelta) item;
+            PostingList tfs = wordDocTf.computeIfAbsent(delta.word, w -> new PostingList());
+            if (delta.tf == 0) {
+                tfs.remove(delta.docId);
+            } else {
+                tfs.put(delta.docId, delta.tf);
+            }
+            changedWords.add(delta.word);
+            return true;
+        }
+
+        @Override
+        public boolean tryProcess() {
+            return flushTraverser == null && !isFlushDue() || flush();
+        }
+
+        @Override
+        public boolean complete() {
+            return flush();
+        }
+
+        private boolean isFlushDue() {
+            return System.nanoTime() - flushedAt >= FLUSH_MILLIS * 1_000_000;
+        }
+
+        private boolean flush() {
+            if (flushTraverser == null) {
+                long docCount = docs.size();
+                List<String> words;
+                if (needsRescoring(docCount)) {
+                    scoredDocCount = docCount;
+                    words = new ArrayList<>(wordDocTf.keySet());
+                } else {
+                    words = new ArrayList<>(changedWords);
+                }
+                changedWords.clear();
+                flushTraverser = traverseIterable(words).map(this::scored);
+            }
+            if (!emitFromTraverser(flushTraverser)) {
+                return false;
+            }
+            flushTraverser = null;
+            flushedAt = System.nanoTime();
+            return true;
+        }
+
+        private boolean needsRescoring(long docCount) {
+            return scoredDocCount == 0
+                    ? docCount > 0
+                    : Math.abs(docCount - scoredDocCount) > IDF_DRIFT_THRESHOLD * scoredDocCount;
+        }
+
+        private Entry<String, PostingList> scored(String word) {
+            PostingList tfs = wordDocTf.get(word);
+            if (tfs.isEmpty()) {
+                wordDocTf.remove(word);
+                return entry(word, tfs);
+            }
+            // The document count is stale, so it can be zero or lower than
+            // the word's document frequency. Such a word occurs everywhere.
+            double idf = scoredDocCount > tfs.size()
+                    ? Math.log(scoredDocCount) - Math.log(tfs.size())
+                    : 0;
+            return entry(word, tfs.scaledCopy(idf));
+        }
+    }
+}
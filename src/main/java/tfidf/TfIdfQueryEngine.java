@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+import com.hazelcast.core.ICompletableFuture;
+import com.hazelcast.core.IMap;
+import com.hazelcast.jet.function.DistributedFunction;
+import expertzone.WordTokenizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+import static java.util.Comparator.comparingDouble;
+
+/**
+ * Answers multi-word queries against an inverted TF-IDF index stored in
+ * an {@code IMap}. The score of a document is the sum of its TF-IDF
+ * scores for the query words.
+ * <p>
+ * The engine requests the posting lists of all the query words at once
+ * with {@code getAsync()}, so each one is fetched from the member that
+ * owns it and the fetches proceed in parallel. It then merges them
+ * document-at-a-time with the MaxScore algorithm: the lists are ordered
+ * by their highest score and, once the bounded heap of the best {@code
+ * k} documents is full, the lists whose combined highest scores can't
+ * lift a document above the heap's threshold no longer propose
+ * candidates. They are only probed for the candidates proposed by the
+ * other lists, which lets the cursors skip over most of their postings.
+ *
+ * @param <V> the type of the index values
+ */
+public class TfIdfQueryEngine<V> {
+
+    private final IMap<String, V> index;
+    private final DistributedFunction<V, PostingCursor> cursorFn;
+
+    private TfIdfQueryEngine(IMap<String, V> index, DistributedFunction<V, PostingCursor> cursorFn) {
+        this.index = index;
+        this.cursorFn = cursorFn;
+    }
+
+    /**
+     * Returns an engine over the index written by {@link CompressedTfIdfP}.
+     */
+    public static TfIdfQueryEngine<CompressedPostings> compressed(IMap<String, CompressedPostings> index) {
+        return new TfIdfQueryEngine<>(index, CompressedPostings::cursor);
+    }
+
+    /**
+     * Returns an engine over the index written by {@link PrimitiveTfIdfP}.
+     */
+    public static TfIdfQueryEngine<PostingList> primitive(IMap<String, PostingList> index) {
+        return new TfIdfQueryEngine<>(index, PostingList::cursor);
+    }
+
+    /**
+     * Returns an engine over the index written by {@code
+     * TfIdfCoreApi.TfIdfP}, the same shape as {@code
+     * TfIdfJdkStreams.invertedIndex}.
+     */
+    public static TfIdfQueryEngine<List<Entry<Long, Double>>> boxed(
+            IMap<String, List<Entry<Long, Double>>> index
+    ) {
+        return new TfIdfQueryEngine<>(index, postings -> {
+            PostingList list = new PostingList(postings.size());
+            for (Entry<Long, Double> e : postings) {
+                list.add(e.getKey(), e.getValue());
+            }
+            return list.cursor();
+        });
+    }
+
+    /**
+     * Returns the {@code k} best-scoring documents for the words of the
+     * given query, together with the time the query took.
+     */
+    public QueryResult search(String query, int k) {
+        long start = System.nanoTime();
+        Set<String> words = new LinkedHashSet<>();
+        WordTokenizer tokenizer = new WordTokenizer().tokenize(query);
+        for (String word; (word = tokenizer.next()) != null; ) {
+            words.add(word);
+        }
+        List<ICompletableFuture<V>> futures = new ArrayList<>(words.size());
+        for (String word : words) {
+            futures.add(index.getAsync(word));
+        }
+        List<PostingCursor> cursors = new ArrayList<>(futures.size());
+        for (ICompletableFuture<V> future : futures) {
+            V postings = await(future);
+            if (postings != null) {
+                cursors.add(cursorFn.apply(postings));
+            }
+        }
+        long fetched = System.nanoTime();
+        PostingList hits = topK(cursors.toArray(new PostingCursor[0]), k);
+        long merged = System.nanoTime();
+        return new QueryResult(hits, fetched - start, merged - fetched);
+    }
+
+    /**
+     * Merges the cursors with the MaxScore algorithm and returns the
+     * {@code k} documents with the highest sum of scores, best first.
+     */
+    static PostingList topK(PostingCursor[] cursors, int k) {
+        TopKHeap heap = new TopKHeap(k);
+        Arrays.sort(cursors, comparingDouble(PostingCursor::maxScore));
+        // upperBounds[i]: the best score a document can get from cursors 0..i
+        double[] upperBounds = new double[cursors.length];
+        double sum = 0;
+        for (int i = 0; i < cursors.length; i++) {
+            sum += cursors[i].maxScore();
+            upperBounds[i] = sum;
+        }
+        // cursors below firstEssential only contribute to candidates of the others
+        int firstEssential = 0;
+        while (firstEssential < cursors.length) {
+            long docId = PostingCursor.NO_MORE_DOCS;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                docId = Math.min(docId, cursors[i].docId());
+            }
+            if (docId == PostingCursor.NO_MORE_DOCS) {
+                break;
+            }
+            double score = 0;
+            for (int i = firstEssential; i < cursors.length; i++) {
+                if (cursors[i].docId() == docId) {
+                    score += cursors[i].score();
+                    cursors[i].next();
+                }
+            }
+            for (int i = firstEssential - 1; i >= 0 && score + upperBounds[i] >= heap.threshold(); i--) {
+                cursors[i].advance(docId);
+                if (cursors[i].docId() == docId) {
+                    score += cursors[i].score();
+                }
+            }
+            if (heap.offer(docId, score)) {
+                while (firstEssential < cursors.length
+                        && upperBounds[firstEssential] < heap.threshold()) {
+                    firstEssential++;
+                }
+            }
+        }
+        return heap.drain();
+    }
+
+    private static <T> T await(ICompletableFuture<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * The best-scoring documents of a query and how long it took to find
+     * them.
+     */
+    public static final class QueryResult {
+        private final PostingList hits;
+        private final long fetchNanos;
+        private final long mergeNanos;
+
+        QueryResult(PostingList hits, long fetchNanos, long mergeNanos) {
+            this.hits = hits;
+            this.fetchNanos = fetchNanos;
+            this.mergeNanos = mergeNanos;
+        }
+
+        /**
+         * Returns the documents and their scores, best first.
+         */
+        public PostingList hits() {
+            return hits;
+        }
+
+        /**
+         * Returns the time spent tokenizing the query and fetching the
+         * posting lists, in nanoseconds.
+         */
+        public long fetchNanos() {
+            return fetchNanos;
+        }
+
+        /**
+         * Returns the time spent merging the posting lists, in nanoseconds.
+         */
+        public long mergeNanos() {
+            return mergeNanos;
+        }
+
+        public long totalNanos() {
+            return fetchNanos + mergeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits in %.3f ms (fetch %.3f ms, merge %.3f ms): %s",
+                    hits.size(), totalNanos() / 1e6, fetchNanos / 1e6, mergeNanos / 1e6, hits);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2008-2018, Hazelcast, Inc. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package tfidf;
+
+/**
+ * Keeps the {@code k} best-scoring documents offered to it in a bounded
+ * min-heap of primitive arrays. Among documents with equal scores the one
+ * with the lower ID ranks higher, which makes the result deterministic.
+ */
+public class TopKHeap {
+
+    private final long[] docIds;
+    private final double[] scores;
+    private int size;
+
+    public TopKHeap(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be positive, but is " + k);
+        }
+        docIds = new long[k];
+        scores = new double[k];
+    }
+
+    /**
+     * Adds the document if it ranks among the best {@code k} seen so far.
+     *
+     * @return whether the document was added
+     */
+    public boolean offer(long docId, double score) {
+        if (size < docIds.length) {
+            docIds[size] = docId;
+            scores[size] = score;
+            siftUp(size++);
+            return true;
+        }
+        if (!isWorse(docIds[0], scores[0], docId, score)) {
+            return false;
+        }
+        docIds[0] = docId;
+        scores[0] = score;
+        siftDown(0);
+        return true;
+    }
+
+    public boolean isFull() {
+        return size == docIds.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the lowest score a document must beat to enter the heap:
+     * the score of the worst kept document once the heap is full, {@code
+     * -Infinity} before that.
+     */
+    public double threshold() {
+        return isFull() ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Returns the kept documents, best first, and empties the heap.
+     */
+    public PostingList drain() {
+        PostingList result = new PostingList(size);
+        int count = size;
+        long[] sortedIds = new long[count];
+        double[] sortedScores = new double[count];
+        for (int i = count - 1; i >= 0; i--) {
+            sortedIds[i] = docIds[0];
+            sortedScores[i] = scores[0];
+            size--;
+            docIds[0] = docIds[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        for (int i = 0; i < count; i++) {
+            result.add(sortedIds[i], sortedScores[i]);
+        }
+        return result;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(docIds[i], scores[i], docIds[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        for (int child; (child = 2 * i + 1) < size; i = child) {
+            if (child + 1 < size
+                    && isWorse(docIds[child + 1], scores[child + 1], docIds[child], scores[child])) {
+                child++;
+            }
+            if (!isWorse(docIds[child], scores[child], docIds[i], scores[i])) {
+                return;
+            }
+            swap(i, child);
+        }
+    }
+
+    private void swap(int i, int j) {
+        long docId = docIds[i];
+        docIds[i] = docIds[j];
+        docIds[j] = docId;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+
+    /**
+     * Tells whether the first document ranks below the second one.
+     */
+    private static boolean isWorse(long docId1, double score1, long docId2, double score2) {
+        return score1 < score2 || score1 == score2 && docId1 > docId2;
+    }
+}